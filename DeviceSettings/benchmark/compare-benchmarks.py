@@ -0,0 +1,51 @@
+#!/usr/bin/env python3
+#
+# Copyright (C) 2026 Yet Another AOSP Project
+#
+# SPDX-License-Identifier: Apache-2.0
+#
+# Compares two JMH JSON reports written by run-benchmarks.sh, printing the
+# score and allocation rate of every benchmark in both.
+#
+# Usage: compare-benchmarks.py baseline.json current.json
+#
+
+import json
+import sys
+
+ALLOC = 'gc.alloc.rate.norm'
+
+
+def load(path):
+    with open(path) as f:
+        results = {}
+        for entry in json.load(f):
+            name = entry['benchmark'].rsplit('.', 1)[-1]
+            primary = entry['primaryMetric']
+            alloc = entry.get('secondaryMetrics', {}).get(ALLOC, {}).get('score')
+            results[name] = (primary['score'], primary['scoreUnit'], alloc)
+        return results
+
+
+def main():
+    if len(sys.argv) != 3:
+        sys.exit('usage: %s baseline.json current.json' % sys.argv[0])
+    base = load(sys.argv[1])
+    curr = load(sys.argv[2])
+
+    print('%-32s %14s %14s %8s %12s %12s' % (
+        'benchmark', 'baseline', 'current', 'delta', 'B/op base', 'B/op curr'))
+    for name in sorted(set(base) & set(curr)):
+        b_score, unit, b_alloc = base[name]
+        c_score, _, c_alloc = curr[name]
+        delta = (c_score - b_score) / b_score * 100 if b_score else 0
+        print('%-32s %11.1f %-2s %11.1f %-2s %+7.1f%% %12s %12s' % (
+            name, b_score, unit[:2], c_score, unit[:2], delta,
+            '-' if b_alloc is None else '%.1f' % b_alloc,
+            '-' if c_alloc is None else '%.1f' % c_alloc))
+    for name in sorted(set(base) ^ set(curr)):
+        print('%-32s only in %s' % (name, 'baseline' if name in base else 'current'))
+
+
+if __name__ == '__main__':
+    main()
@@ -0,0 +1,27 @@
+#!/bin/bash
+#
+# Copyright (C) 2026 Yet Another AOSP Project
+#
+# SPDX-License-Identifier: Apache-2.0
+#
+# Builds and runs the DeviceSettings I/O benchmarks on the host with the GC
+# profiler, and writes a JSON report. Compare two reports with
+# compare-benchmarks.py.
+#
+# Usage: run-benchmarks.sh [report.json] [extra JMH args...]
+#
+
+set -e
+
+DIR="$(cd "$(dirname "$0")" && pwd)"
+REPORT="${1:-sysfs-benchmark-$(date +%Y%m%d-%H%M%S).json}"
+shift || true
+
+mvn -B -q -f "${DIR}/pom.xml" package
+
+java -jar "${DIR}/target/benchmarks.jar" \
+    -prof gc \
+    -rf json -rff "${REPORT}" \
+    "$@"
+
+echo "Report written to ${REPORT}"
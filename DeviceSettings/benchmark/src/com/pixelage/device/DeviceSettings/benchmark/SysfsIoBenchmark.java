@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings.benchmark;
+
+import com.pixelage.device.DeviceSettings.DirectorySysfsBackend;
+import com.pixelage.device.DeviceSettings.SysfsBackend;
+import com.pixelage.device.DeviceSettings.SysfsIo;
+import com.pixelage.device.DeviceSettings.SysfsNodePool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of the paths behind Utils.readLine, Utils.writeValue,
+ * Utils.getFileValueAsBoolean and the mode switch toggles, run against a fake
+ * sysfs tree. The tree is created in /dev/shm when available, or under the
+ * directory given by the devicesettings.sysfs.root property.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SysfsIoBenchmark {
+
+    // Same nodes as the mode switches and FPSInfoService, cached like while watched
+    static final String DC = "/sys/devices/platform/soc/soc:qcom,dsi-display-primary/dc_dim";
+    static final String HBM =
+            "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/card0-DSI-1/hbm";
+    static final String READING =
+            "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/card0-DSI-1/reading";
+    static final String MEASURED_FPS =
+            "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/sde-crtc-0/measured_fps";
+    static final long CACHE_TTL_MS = 30000;
+
+    private Path mRoot;
+    private boolean mOwnRoot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final String root = System.getProperty(SysfsBackend.PROPERTY_ROOT);
+        if (root != null && !root.isEmpty()) {
+            mRoot = Paths.get(root);
+        } else {
+            final Path shm = Paths.get("/dev/shm");
+            mRoot = Files.isDirectory(shm)
+                    ? Files.createTempDirectory(shm, "sysfs")
+                    : Files.createTempDirectory("sysfs");
+            mOwnRoot = true;
+        }
+        createNode(DC, "0\n");
+        createNode(HBM, "0\n");
+        createNode(READING, "0\n");
+        createNode(MEASURED_FPS, "fps: 60.1 duration:500000 frame_count:30\n");
+
+        SysfsNodePool.getInstance().setBackend(new DirectorySysfsBackend(mRoot.toString()));
+        SysfsIo.setCacheTtl(DC, CACHE_TTL_MS);
+        SysfsIo.setCacheTtl(HBM, CACHE_TTL_MS);
+        SysfsIo.setCacheTtl(READING, CACHE_TTL_MS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SysfsNodePool.getInstance().closeAll();
+        SysfsIo.invalidateCache();
+        if (!mOwnRoot) return;
+        try (Stream<Path> paths = Files.walk(mRoot)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void createNode(String node, String value) throws IOException {
+        final Path path = Paths.get(mRoot.toString() + node);
+        Files.createDirectories(path.getParent());
+        Files.write(path, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Drops every open handle and cached value before each invocation. */
+    @State(Scope.Thread)
+    public static class Cold {
+        @Setup(Level.Invocation)
+        public void reset() {
+            SysfsNodePool.getInstance().closeAll();
+            SysfsIo.invalidateCache();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Toggle {
+        boolean enabled;
+
+        String next() {
+            enabled = !enabled;
+            return enabled ? "1" : "0";
+        }
+    }
+
+    // Warm, single thread
+
+    @Benchmark
+    public String readLine() {
+        return SysfsIo.readLine(MEASURED_FPS);
+    }
+
+    @Benchmark
+    public String readLineCached() {
+        return SysfsIo.readLine(HBM);
+    }
+
+    @Benchmark
+    public boolean getFileValueAsBoolean() {
+        return SysfsIo.readBoolean(MEASURED_FPS, false);
+    }
+
+    @Benchmark
+    public boolean getFileValueAsBooleanCached() {
+        return SysfsIo.readBoolean(DC, false);
+    }
+
+    @Benchmark
+    public long readFixedPoint() {
+        return SysfsIo.readFixedPoint(MEASURED_FPS, 1, -1);
+    }
+
+    @Benchmark
+    public boolean writeValue(Toggle toggle) {
+        return SysfsIo.writeValue(HBM, toggle.next(), false);
+    }
+
+    /** What a mode switch does on every toggle. */
+    @Benchmark
+    public boolean modeSwitchToggle(Toggle toggle) {
+        return SysfsIo.writeValue(DC, toggle.next(), true);
+    }
+
+    /** A mode switch set to the state it is already in. */
+    @Benchmark
+    public boolean modeSwitchRedundant() {
+        return SysfsIo.writeValue(READING, "0", true);
+    }
+
+    // Cold: no open handle, nothing cached
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10, batchSize = 1)
+    @Measurement(iterations = 200, batchSize = 1)
+    public String readLineCold(Cold cold) {
+        return SysfsIo.readLine(HBM);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10, batchSize = 1)
+    @Measurement(iterations = 200, batchSize = 1)
+    public boolean writeValueCold(Cold cold, Toggle toggle) {
+        return SysfsIo.writeValue(HBM, toggle.next(), false);
+    }
+
+    // Warm, contended
+
+    @Benchmark
+    @Threads(4)
+    public String readLineContended() {
+        return SysfsIo.readLine(MEASURED_FPS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String readLineCachedContended() {
+        return SysfsIo.readLine(HBM);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean modeSwitchToggleContended(Toggle toggle) {
+        return SysfsIo.writeValue(DC, toggle.next(), true);
+    }
+}
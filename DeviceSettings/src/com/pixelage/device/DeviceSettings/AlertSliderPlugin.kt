@@ -12,11 +12,14 @@ import android.content.Context
 import android.content.Intent
 import android.content.IntentFilter
 import android.content.res.Configuration
+import android.database.ContentObserver
 import android.hardware.display.AmbientDisplayConfiguration
 import android.os.Handler
+import android.os.HandlerThread
 import android.os.Looper
 import android.os.Message
 import android.os.UserHandle
+import android.util.Log
 import android.view.View
 import com.android.systemui.plugins.OverlayPlugin
 import com.android.systemui.plugins.annotations.Requires
@@ -26,6 +29,8 @@ class AlertSliderPlugin : OverlayPlugin {
     private lateinit var pluginContext: Context
     private lateinit var handler: NotificationHandler
     private lateinit var ambientConfig: AmbientDisplayConfiguration
+    private lateinit var stateThread: HandlerThread
+    private lateinit var stateObserver: ContentObserver
     private val dialogLock = Any()
 
     private data class NotificationInfo(
@@ -36,20 +41,6 @@ class AlertSliderPlugin : OverlayPlugin {
     private val updateReceiver: BroadcastReceiver = object : BroadcastReceiver() {
         override fun onReceive(context: Context, intent: Intent) {
             when (intent.action) {
-                Constants.SLIDER_UPDATE_ACTION -> {
-                    synchronized (dialogLock) {
-                        val ringer = intent.getIntExtra("mode", NONE)
-                            .takeIf { it != NONE } ?: return
-
-                        handler.obtainMessage(
-                            MSG_DIALOG_UPDATE, NotificationInfo(
-                                intent.getIntExtra("position", Constants.POSITION_BOTTOM),
-                                ringer
-                            )
-                        ).sendToTarget()
-                        handler.sendEmptyMessage(MSG_DIALOG_SHOW)
-                    }
-                }
                 Intent.ACTION_CONFIGURATION_CHANGED -> {
                     synchronized (dialogLock) {
                         handler.sendEmptyMessage(MSG_DIALOG_RECREATE)
@@ -59,17 +50,59 @@ class AlertSliderPlugin : OverlayPlugin {
         }
     }
 
+    // runs on stateThread, the provider call is a binder round trip that
+    // must not block the SystemUI main thread
+    private inner class StateObserver(handler: Handler) : ContentObserver(handler) {
+        override fun onChange(selfChange: Boolean) {
+            val state = try {
+                pluginContext.contentResolver.call(
+                    SliderStateProvider.CONTENT_URI, SliderStateProvider.METHOD_GET, null, null
+                )
+            } catch (e: IllegalArgumentException) {
+                Log.w(TAG, "Failed to read slider state", e)
+                null
+            } ?: return
+
+            // several changes can be observed at once, only show each state once.
+            // the sequence only grows, also across restarts of the provider
+            val sequence = state.getLong(SliderStateProvider.KEY_SEQUENCE, 0L)
+            if (sequence <= lastSequence) return
+            lastSequence = sequence
+
+            if (!state.getBoolean(SliderStateProvider.KEY_SHOW_DIALOG, false)) return
+            synchronized (dialogLock) {
+                val ringer = state.getInt(SliderStateProvider.KEY_MODE, NONE)
+                    .takeIf { it != NONE } ?: return
+
+                handler.obtainMessage(
+                    MSG_DIALOG_UPDATE, NotificationInfo(
+                        state.getInt(SliderStateProvider.KEY_POSITION, Constants.POSITION_BOTTOM),
+                        ringer
+                    )
+                ).sendToTarget()
+                handler.sendEmptyMessage(MSG_DIALOG_SHOW)
+            }
+        }
+    }
+    private var lastSequence = 0L
+
     override fun onCreate(context: Context, plugin: Context) {
         pluginContext = plugin
         handler = NotificationHandler(plugin)
         ambientConfig = AmbientDisplayConfiguration(context)
+        stateThread = HandlerThread(TAG).apply { start() }
+        stateObserver = StateObserver(Handler(stateThread.looper))
 
-        plugin.registerReceiver(updateReceiver, IntentFilter(Constants.SLIDER_UPDATE_ACTION))
+        plugin.contentResolver.registerContentObserver(
+            SliderStateProvider.CONTENT_URI, false, stateObserver
+        )
         plugin.registerReceiver(updateReceiver, IntentFilter(Intent.ACTION_CONFIGURATION_CHANGED))
     }
 
     override fun onDestroy() {
+        pluginContext.contentResolver.unregisterContentObserver(stateObserver)
         pluginContext.unregisterReceiver(updateReceiver)
+        stateThread.quitSafely()
     }
 
     override fun setup(statusBar: View, navBar: View) {}
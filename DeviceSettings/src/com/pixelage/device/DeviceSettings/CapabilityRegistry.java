@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import com.pixelage.device.DeviceSettings.ModeSwitch.DCModeSwitch;
+import com.pixelage.device.DeviceSettings.ModeSwitch.HBMModeSwitch;
+import com.pixelage.device.DeviceSettings.ModeSwitch.ReadingModeSwitch;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which hardware nodes exist and are writable on this device.
+ *
+ * The nodes are probed once per build: {@link Startup} loads the result,
+ * persisted keyed by the build fingerprint, and only probes again after an
+ * OTA. Nodes missing at that point, e.g. created late by their driver, are
+ * probed again on {@link #refresh(Context)} once boot completed. A process
+ * that was started later, without going through Startup, probes the nodes
+ * in memory on first use rather than reading the persisted result on
+ * whatever thread asks first.
+ */
+public final class CapabilityRegistry {
+
+    private static final String TAG = CapabilityRegistry.class.getSimpleName();
+
+    private static final String PREF_FILE_NAME = "capabilities";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+
+    private static final int FLAG_WRITABLE = 1 << 1;
+
+    private static final String[] NODES = {
+        DCModeSwitch.FILE,
+        HBMModeSwitch.FILE,
+        ReadingModeSwitch.FILE,
+        FPSInfoService.MEASURED_FPS,
+    };
+
+    private static final CapabilityRegistry sInstance = new CapabilityRegistry();
+
+    private volatile Map<String, Integer> mFlags;
+    private boolean mLoaded;
+
+    private CapabilityRegistry() { }
+
+    public static CapabilityRegistry getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Load the persisted capabilities, probing the nodes if there are none for
+     * the current build.
+     */
+    public synchronized void load(Context context) {
+        if (mLoaded) return;
+        final SharedPreferences prefs = getPrefs(context);
+        if (Build.FINGERPRINT.equals(prefs.getString(KEY_FINGERPRINT, null))) {
+            final Map<String, Integer> flags = new HashMap<>();
+            for (String node : NODES) {
+                flags.put(node, prefs.getInt(node, 0));
+            }
+            mFlags = Collections.unmodifiableMap(flags);
+        } else {
+            persist(prefs, probe());
+        }
+        mLoaded = true;
+    }
+
+    /**
+     * Probe the nodes again if any of them wasn't writable, and persist the
+     * result if it changed.
+     */
+    public synchronized void refresh(Context context) {
+        if (mFlags != null && !mFlags.containsValue(0)) return;
+        final Map<String, Integer> flags = probe();
+        if (flags.equals(mFlags)) return;
+        persist(getPrefs(context), flags);
+        mLoaded = true;
+    }
+
+    public boolean isWritable(String filename) {
+        return (getFlags(filename) & FLAG_WRITABLE) != 0;
+    }
+
+    private int getFlags(String filename) {
+        Map<String, Integer> flags = mFlags;
+        if (flags == null) {
+            synchronized (this) {
+                if (mFlags == null) {
+                    mFlags = probe();
+                }
+                flags = mFlags;
+            }
+        }
+        final Integer value = flags.get(filename);
+        return value != null ? value : 0;
+    }
+
+    private void persist(SharedPreferences prefs, Map<String, Integer> flags) {
+        final SharedPreferences.Editor editor = prefs.edit().clear();
+        for (Map.Entry<String, Integer> entry : flags.entrySet()) {
+            editor.putInt(entry.getKey(), entry.getValue());
+        }
+        editor.putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+        mFlags = flags;
+        Log.i(TAG, "Probed hardware capabilities: " + flags);
+    }
+
+    private static Map<String, Integer> probe() {
+        final Map<String, Integer> flags = new HashMap<>();
+        for (String node : NODES) {
+            flags.put(node, Utils.fileWritable(node) ? FLAG_WRITABLE : 0);
+        }
+        return Collections.unmodifiableMap(flags);
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.createDeviceProtectedStorageContext()
+                .getSharedPreferences(PREF_FILE_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -31,10 +31,13 @@ public class Constants {
 
     // Broadcast action for settings update
     static final String UPDATE_PREFS_ACTION = "com.pixelage.device.DeviceSettings.UPDATE_SETTINGS";
-    static final String SLIDER_UPDATE_ACTION = "com.pixelage.device.DeviceSettings.UPDATE_SLIDER";
+    // Ordered broadcast collecting the stats of the key handlers into its result data,
+    // "reset" extra clears them afterwards
+    static final String DUMP_STATS_ACTION = "com.pixelage.device.DeviceSettings.DUMP_STATS";
+    static final String DUMP_STATS_EXTRA_RESET = "reset";
 
     // Shared preferences
-    private static final String DE_PREF_FILE_NAME = "device_settings";
+    static final String DE_PREF_FILE_NAME = "device_settings";
 
     // Preference keys
     public static final String NOTIF_DIALOG_ENABLED_KEY = "slider_dialog_enabled";
@@ -43,7 +46,7 @@ public class Constants {
     public static final String NOTIF_SLIDER_MIDDLE_KEY = "keycode_middle_position";
     public static final String NOTIF_SLIDER_BOTTOM_KEY = "keycode_bottom_position";
     public static final String NOTIF_SLIDER_MUTE_MEDIA_KEY = "slider_mute_media";
-    private static final String NOTIF_SLIDER_MUTE_MEDIA_LEVEL_KEY = "slider_mute_media_level";
+    static final String NOTIF_SLIDER_MUTE_MEDIA_LEVEL_KEY = "slider_mute_media_level";
 
     // Slider positions
     public static final int POSITION_TOP = 603;
@@ -99,16 +102,6 @@ public class Constants {
                 sStringKeyPreferenceMap.get(key), value, UserHandle.USER_CURRENT);
     }
 
-    public static void setLastMediaLevel(Context context, int level) {
-        Settings.System.putIntForUser(context.getContentResolver(),
-                NOTIF_SLIDER_MUTE_MEDIA_LEVEL_KEY, level, UserHandle.USER_CURRENT);
-    }
-
-    public static int getLastMediaLevel(Context context) {
-        return Settings.System.getIntForUser(context.getContentResolver(),
-                NOTIF_SLIDER_MUTE_MEDIA_LEVEL_KEY, 80, UserHandle.USER_CURRENT);
-    }
-
     public static boolean getIsMuteMediaEnabled(Context context) {
         return Settings.System.getIntForUser(context.getContentResolver(),
                 NOTIF_SLIDER_MUTE_MEDIA_KEY, 0, UserHandle.USER_CURRENT) == 1;
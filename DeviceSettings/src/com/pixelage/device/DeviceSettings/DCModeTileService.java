@@ -17,7 +17,6 @@
 */
 package com.pixelage.device.DeviceSettings;
 
-import android.content.SharedPreferences;
 import android.graphics.drawable.Icon;
 import android.service.quicksettings.Tile;
 import android.service.quicksettings.TileService;
@@ -25,20 +24,13 @@ import android.service.quicksettings.TileService;
 import com.pixelage.device.DeviceSettings.ModeSwitch.DCModeSwitch;
 
 public class DCModeTileService extends TileService
-        implements SharedPreferences.OnSharedPreferenceChangeListener {
+        implements SysfsWatcher.Listener {
 
-    private SharedPreferences mPrefs;
     private boolean mEnabled = false;
-    private boolean mInternalStart = false;
 
     @Override
-    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)  {
-        if (!key.equals(DCModeSwitch.KEY_DC_SWITCH)) return;
-        if (mInternalStart) {
-            mInternalStart = false;
-            return;
-        }
-        refreshState();
+    public void onNodeChanged(SysfsWatcher.Event event) {
+        refreshState(event.asBoolean());
     }
 
     @Override
@@ -59,22 +51,23 @@ public class DCModeTileService extends TileService
     @Override
     public void onStartListening() {
         super.onStartListening();
-        refreshState();
-        mPrefs = Constants.getDESharedPrefs(getApplicationContext());
-        mPrefs.registerOnSharedPreferenceChangeListener(this);
+        final String file = DCModeSwitch.getFile();
+        if (file == null) {
+            refreshState(false);
+            return;
+        }
+        SysfsWatcher.getInstance().subscribe(file, this);
     }
 
     @Override
     public void onStopListening() {
         super.onStopListening();
-        mPrefs.unregisterOnSharedPreferenceChangeListener(this);
-        mPrefs = null;
+        SysfsWatcher.getInstance().unsubscribe(DCModeSwitch.getFile(), this);
     }
 
     @Override
     public void onClick() {
         super.onClick();
-        mInternalStart = true;
         mEnabled = DCModeSwitch.isCurrentlyEnabled();
         DCModeSwitch.setEnabled(!mEnabled, this);
         //getQsTile().setLabel(mEnabled ? "DC off" : "DC On");
@@ -84,8 +77,8 @@ public class DCModeTileService extends TileService
         getQsTile().updateTile();
     }
 
-    private void refreshState() {
-        mEnabled = DCModeSwitch.isCurrentlyEnabled();
+    private void refreshState(boolean enabled) {
+        mEnabled = enabled;
         getQsTile().setIcon(Icon.createWithResource(this,
                     mEnabled ? R.drawable.ic_dimming_on : R.drawable.ic_dimming_off));
         getQsTile().setState(mEnabled ? Tile.STATE_ACTIVE : Tile.STATE_INACTIVE);
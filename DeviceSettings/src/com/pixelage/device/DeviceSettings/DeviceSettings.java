@@ -20,7 +20,6 @@ package com.pixelage.device.DeviceSettings;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.database.ContentObserver;
 import android.hardware.display.AmbientDisplayConfiguration;
 import android.os.Bundle;
@@ -42,7 +41,7 @@ import com.pixelage.device.DeviceSettings.ModeSwitch.HBMModeSwitch;
 import com.pixelage.device.DeviceSettings.ModeSwitch.ReadingModeSwitch;
 
 public class DeviceSettings extends PreferenceFragment implements
-        Preference.OnPreferenceChangeListener, SharedPreferences.OnSharedPreferenceChangeListener {
+        Preference.OnPreferenceChangeListener {
 
     private static final String KEY_HBM_SWITCH = "hbm";
 
@@ -63,48 +62,35 @@ public class DeviceSettings extends PreferenceFragment implements
     private ListPreference mReadingMode;
 
     private boolean mInternalFpsStart = false;
-    private boolean mInternalHbmStart = false;
-    private boolean mInternalDCStart = false;
-    private boolean mInternalReadingStart = false;
 
-    @Override
-    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)  {
-        switch (key) {
-            case FPSInfoService.PREF_KEY_FPS_STATE:
-                if (mInternalFpsStart) {
-                    mInternalFpsStart = false;
-                    return;
-                }
-                if (mFpsInfo == null) return;
-                mFpsInfo.setChecked(sharedPreferences.getBoolean(key, false));
-                break;
-            case HBMModeSwitch.PREF_KEY_HBM_STATE:
-                if (mInternalHbmStart) {
-                    mInternalHbmStart = false;
-                    return;
-                }
-                if (mHBMModeSwitch == null) return;
-                mHBMModeSwitch.setChecked(sharedPreferences.getBoolean(key, false));
-                break;
-            case DCModeSwitch.KEY_DC_SWITCH:
-                if (mInternalDCStart) {
-                    mInternalDCStart = false;
-                    return;
-                }
-                if (mDCModeSwitch == null) return;
-                mDCModeSwitch.setChecked(sharedPreferences.getBoolean(key, false));
-                break;
-            case ReadingModeSwitch.KEY_READING_SWITCH:
-                if (mInternalReadingStart) {
-                    mInternalReadingStart = false;
-                    return;
-                }
-                if (mReadingMode == null) return;
-                mReadingMode.setValue(String.valueOf(sharedPreferences.getInt(key,
-                        ReadingModeSwitch.STATE_DISABLED)));
-                break;
+    private final DeviceStateRepository.Listener mStateListener =
+            new DeviceStateRepository.Listener() {
+        @Override
+        public void onBooleanChanged(String key, boolean value) {
+            if (key.equals(FPSInfoService.PREF_KEY_FPS_STATE)) {
+                onFpsStateChanged(value);
+            }
         }
-    }
+
+        @Override
+        public void onRemoved(String key) {
+            if (key.equals(FPSInfoService.PREF_KEY_FPS_STATE)) {
+                onFpsStateChanged(false);
+            }
+        }
+    };
+
+    private final SysfsWatcher.Listener mNodeListener = event -> {
+        final String file = event.getFilename();
+        if (file.equals(HBMModeSwitch.getFile())) {
+            mHBMModeSwitch.setChecked(event.asBoolean());
+        } else if (file.equals(DCModeSwitch.getFile())) {
+            mDCModeSwitch.setChecked(event.asBoolean());
+        } else if (mReadingMode != null && file.equals(ReadingModeSwitch.getFile())) {
+            mReadingMode.setValue(String.valueOf(
+                    event.asInt(ReadingModeSwitch.STATE_DISABLED)));
+        }
+    };
 
     private final ContentObserver mRefreshRateObserver = new ContentObserver(
             new Handler(Looper.getMainLooper())) {
@@ -176,8 +162,7 @@ public class DeviceSettings extends PreferenceFragment implements
         mFpsInfo.setOnPreferenceChangeListener(this);
 
         // Registering observers
-        final SharedPreferences prefs = Constants.getDESharedPrefs(getContext());
-        prefs.registerOnSharedPreferenceChangeListener(this);
+        DeviceStateRepository.getInstance(getContext()).registerListener(mStateListener);
 
         if (getResources().getBoolean(R.bool.config_deviceHasHighRefreshRate)) {
             getContext().getContentResolver().registerContentObserver(
@@ -190,10 +175,24 @@ public class DeviceSettings extends PreferenceFragment implements
     @Override
     public void onResume() {
         super.onResume();
-        mHBMModeSwitch.setChecked(HBMModeSwitch.isCurrentlyEnabled());
+        final SysfsWatcher watcher = SysfsWatcher.getInstance();
+        watcher.subscribe(HBMModeSwitch.getFile(), mNodeListener);
+        watcher.subscribe(DCModeSwitch.getFile(), mNodeListener);
+        if (mReadingMode != null) {
+            watcher.subscribe(ReadingModeSwitch.getFile(), mNodeListener);
+        }
         mFpsInfo.setChecked(isFPSOverlayRunning());
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        final SysfsWatcher watcher = SysfsWatcher.getInstance();
+        watcher.unsubscribe(HBMModeSwitch.getFile(), mNodeListener);
+        watcher.unsubscribe(DCModeSwitch.getFile(), mNodeListener);
+        watcher.unsubscribe(ReadingModeSwitch.getFile(), mNodeListener);
+    }
+
     @Override
     public boolean onPreferenceChange(Preference preference, Object newValue) {
         final ContentResolver resolver = getContext().getContentResolver();
@@ -207,7 +206,6 @@ public class DeviceSettings extends PreferenceFragment implements
             Boolean enabled = (Boolean) newValue;
             RefreshRateSwitch.setPeakRefresh(getContext(), enabled);
         } else if (preference == mHBMModeSwitch) {
-            mInternalHbmStart = true;
             Boolean enabled = (Boolean) newValue;
             HBMModeSwitch.setEnabled(enabled, getContext());            
         } else if (preference == mMuteMediaSwitch) {
@@ -224,11 +222,9 @@ public class DeviceSettings extends PreferenceFragment implements
             Settings.System.putInt(resolver,
                     Constants.NOTIF_DIALOG_DOZE_KEY, enabled ? 1 : 0);
         } else if (preference == mDCModeSwitch) {
-            mInternalDCStart = true;
             Boolean enabled = (Boolean) newValue;
             DCModeSwitch.setEnabled(enabled, getContext());
         } else if (preference == mReadingMode) {
-            mInternalReadingStart = true;
             String value = (String) newValue;
             ReadingModeSwitch.setState(Integer.parseInt(value), getContext());
         } else if (newValue instanceof String) {
@@ -251,8 +247,7 @@ public class DeviceSettings extends PreferenceFragment implements
     @Override
     public void onDestroy() {
         super.onDestroy();
-        final SharedPreferences prefs = Constants.getDESharedPrefs(getContext());
-        prefs.unregisterOnSharedPreferenceChangeListener(this);
+        DeviceStateRepository.getInstance(getContext()).unregisterListener(mStateListener);
         if (getResources().getBoolean(R.bool.config_deviceHasHighRefreshRate)) {
             getContext().getContentResolver().unregisterContentObserver(
                     mRefreshRateObserver);
@@ -260,8 +255,17 @@ public class DeviceSettings extends PreferenceFragment implements
     }
 
     private boolean isFPSOverlayRunning() {
-        final SharedPreferences prefs = Constants.getDESharedPrefs(getContext());
-        return prefs.getBoolean(FPSInfoService.PREF_KEY_FPS_STATE, false);
+        return DeviceStateRepository.getInstance(getContext()).getBoolean(
+                FPSInfoService.PREF_KEY_FPS_STATE, false);
+    }
+
+    private void onFpsStateChanged(boolean running) {
+        if (mInternalFpsStart) {
+            mInternalFpsStart = false;
+            return;
+        }
+        if (mFpsInfo == null) return;
+        mFpsInfo.setChecked(running);
     }
 
     private void updateSliderEnablement() {
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import com.pixelage.device.DeviceSettings.ModeSwitch.DCModeSwitch;
+import com.pixelage.device.DeviceSettings.ModeSwitch.HBMModeSwitch;
+import com.pixelage.device.DeviceSettings.ModeSwitch.ReadingModeSwitch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Fixed layout binary file holding the device state, memory mapped so that
+ * loading it is a single page fault or two.
+ *
+ * The file holds two records on separate pages. Every write goes to the one
+ * not holding the latest state, with a higher generation, so a write torn by
+ * a crash or power loss leaves the previous state intact.
+ *
+ * Record layout, little endian:
+ * <pre>
+ *   0  int    magic
+ *   4  short  version
+ *   6  short  slot count
+ *   8  int    CRC32 of the payload
+ *  12  int    generation, the highest valid one is current  (payload start)
+ *  16  int    bitmask of the slots holding a value
+ *  20  int[]  one value per slot, booleans are 0 or 1
+ * </pre>
+ */
+public final class DeviceStateFile {
+
+    public static final String FILE_NAME = "device_state.bin";
+
+    private static final int MAGIC = 0x54535344; // "DSST"
+    private static final short VERSION = 1;
+
+    private static final String[] KEYS = {
+        DCModeSwitch.KEY_DC_SWITCH,
+        HBMModeSwitch.PREF_KEY_HBM_STATE,
+        ReadingModeSwitch.KEY_READING_SWITCH,
+        FPSInfoService.PREF_KEY_FPS_STATE,
+        Startup.KEY_MIGRATION_DONE,
+    };
+    private static final boolean[] BOOLEAN = {
+        true,
+        true,
+        false,
+        true,
+        true,
+    };
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_SLOTS = 6;
+    private static final int OFFSET_CRC = 8;
+    private static final int OFFSET_GENERATION = 12;
+    private static final int OFFSET_PRESENT = 16;
+    private static final int OFFSET_VALUES = 20;
+    private static final int RECORD_SIZE = OFFSET_VALUES + KEYS.length * 4;
+
+    private static final int[] RECORDS = { 0, 4096 };
+    private static final int SIZE = RECORDS[1] + RECORD_SIZE;
+
+    private final MappedByteBuffer mBuffer;
+    private final CRC32 mCrc = new CRC32();
+    // record holding the latest state, -1 if none is valid
+    private int mCurrent;
+
+    private DeviceStateFile(MappedByteBuffer buffer) {
+        mBuffer = buffer;
+        mBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        mCurrent = findCurrent();
+    }
+
+    /**
+     * Map the file, creating it if needed.
+     */
+    public static DeviceStateFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return new DeviceStateFile(channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE));
+        }
+    }
+
+    /**
+     * @return whether the value can be stored under the key: the key has a
+     *         slot, and the value is a Boolean or Integer matching its type
+     */
+    public static boolean canStore(String key, Object value) {
+        for (int i = 0; i < KEYS.length; i++) {
+            if (KEYS[i].equals(key)) {
+                return BOOLEAN[i] ? value instanceof Boolean : value instanceof Integer;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the file has at least one intact record
+     */
+    public synchronized boolean isValid() {
+        return mCurrent >= 0;
+    }
+
+    /**
+     * @return the stored values, keyed like the shared preferences were
+     */
+    public synchronized Map<String, Object> read() {
+        final Map<String, Object> values = new HashMap<>();
+        if (mCurrent < 0) return values;
+        final int base = RECORDS[mCurrent];
+        final int present = mBuffer.getInt(base + OFFSET_PRESENT);
+        for (int i = 0; i < KEYS.length; i++) {
+            if ((present & (1 << i)) == 0) continue;
+            final int value = mBuffer.getInt(base + OFFSET_VALUES + i * 4);
+            values.put(KEYS[i], BOOLEAN[i] ? (Object) (value != 0) : (Object) value);
+        }
+        return values;
+    }
+
+    /**
+     * Write the values as the new latest state and sync them to disk. Values
+     * that can't be stored, see {@link #canStore}, are ignored.
+     */
+    public synchronized void write(Map<String, Object> values) {
+        final int target = mCurrent == 0 ? 1 : 0;
+        final int generation = mCurrent >= 0 ? generationOf(mCurrent) + 1 : 1;
+        final int base = RECORDS[target];
+        int present = 0;
+        for (int i = 0; i < KEYS.length; i++) {
+            final Object value = values.get(KEYS[i]);
+            if (!canStore(KEYS[i], value)) continue;
+            final int raw = BOOLEAN[i] ? ((Boolean) value ? 1 : 0) : (Integer) value;
+            present |= 1 << i;
+            mBuffer.putInt(base + OFFSET_VALUES + i * 4, raw);
+        }
+        mBuffer.putInt(base + OFFSET_PRESENT, present);
+        mBuffer.putInt(base + OFFSET_GENERATION, generation);
+        mBuffer.putInt(base + OFFSET_MAGIC, MAGIC);
+        mBuffer.putShort(base + OFFSET_VERSION, VERSION);
+        mBuffer.putShort(base + OFFSET_SLOTS, (short) KEYS.length);
+        mBuffer.putInt(base + OFFSET_CRC, checksum(base + OFFSET_GENERATION, base + RECORD_SIZE));
+        mBuffer.force();
+        mCurrent = target;
+    }
+
+    private int findCurrent() {
+        int current = -1;
+        int currentGeneration = -1;
+        for (int i = 0; i < RECORDS.length; i++) {
+            final int generation = generationOf(i);
+            if (generation > currentGeneration) {
+                current = i;
+                currentGeneration = generation;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the generation of the record, or -1 if it isn't valid
+     */
+    private int generationOf(int record) {
+        final int base = RECORDS[record];
+        if (mBuffer.getInt(base + OFFSET_MAGIC) != MAGIC
+                || mBuffer.getShort(base + OFFSET_VERSION) != VERSION
+                || mBuffer.getShort(base + OFFSET_SLOTS) != KEYS.length
+                || mBuffer.getInt(base + OFFSET_CRC)
+                        != checksum(base + OFFSET_GENERATION, base + RECORD_SIZE)) {
+            return -1;
+        }
+        return mBuffer.getInt(base + OFFSET_GENERATION);
+    }
+
+    private int checksum(int start, int end) {
+        mCrc.reset();
+        for (int i = start; i < end; i++) {
+            mCrc.update(mBuffer.get(i));
+        }
+        return (int) mCrc.getValue();
+    }
+}
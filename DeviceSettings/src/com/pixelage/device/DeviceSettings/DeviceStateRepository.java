@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide, in-memory copy of the device settings state.
+ *
+ * Reads and writes never touch the disk. Changes are persisted to the
+ * {@link DeviceStateFile} in batches, at most {@link #MAX_FLUSHES_PER_SECOND}
+ * times per second, each batch being synced to disk on a background thread.
+ * The DE shared preferences the state used to live in are migrated on first
+ * use, and only used directly if the state file can't be mapped.
+ */
+public final class DeviceStateRepository {
+
+    private static final String TAG = "DeviceStateRepository";
+
+    private static final int MAX_FLUSHES_PER_SECOND = 4;
+    private static final long FLUSH_INTERVAL_MS = 1000 / MAX_FLUSHES_PER_SECOND;
+
+    private static DeviceStateRepository sInstance;
+
+    /**
+     * Called on the main thread after a value changed.
+     */
+    public interface Listener {
+        default void onBooleanChanged(String key, boolean value) { }
+        default void onIntChanged(String key, int value) { }
+        default void onRemoved(String key) { }
+    }
+
+    private final DeviceStateFile mFile;
+    private final SharedPreferences mPrefs;
+    private final Map<String, Object> mValues = new HashMap<>();
+    private final Set<String> mDirty = new HashSet<>();
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Handler mFlushHandler;
+    private final Object mFlushLock = new Object();
+    private boolean mFlushScheduled;
+    private long mLastFlush;
+
+    private DeviceStateRepository(Context context) {
+        final Context deContext = context.createDeviceProtectedStorageContext();
+        DeviceStateFile file = null;
+        try {
+            file = DeviceStateFile.open(
+                    new File(deContext.getFilesDir(), DeviceStateFile.FILE_NAME));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to map the state file, using shared preferences", e);
+        }
+        mFile = file;
+
+        if (mFile == null) {
+            mPrefs = Constants.getDESharedPrefs(context);
+            mValues.putAll(mPrefs.getAll());
+        } else if (mFile.isValid()) {
+            mPrefs = null;
+            mValues.putAll(mFile.read());
+        } else {
+            // new file, or neither record is intact: take whatever the
+            // preferences still hold, they are only deleted once migrated
+            mPrefs = null;
+            for (Map.Entry<String, ?> entry
+                    : Constants.getDESharedPrefs(context).getAll().entrySet()) {
+                if (DeviceStateFile.canStore(entry.getKey(), entry.getValue())) {
+                    mValues.put(entry.getKey(), entry.getValue());
+                } else {
+                    Log.w(TAG, "Not migrating " + entry.getKey() + ", it has no slot");
+                }
+            }
+            mFile.write(mValues);
+            deContext.deleteSharedPreferences(Constants.DE_PREF_FILE_NAME);
+            Log.i(TAG, "Migrated " + mValues.keySet() + " to the state file");
+        }
+
+        final HandlerThread thread = new HandlerThread("DeviceStateRepository");
+        thread.start();
+        mFlushHandler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized DeviceStateRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DeviceStateRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        final Object value = mValues.get(key);
+        return value instanceof Boolean ? (Boolean) value : defValue;
+    }
+
+    public synchronized int getInt(String key, int defValue) {
+        final Object value = mValues.get(key);
+        return value instanceof Integer ? (Integer) value : defValue;
+    }
+
+    public synchronized boolean contains(String key) {
+        return mValues.containsKey(key);
+    }
+
+    public synchronized Set<String> getKeys() {
+        return new HashSet<>(mValues.keySet());
+    }
+
+    public void putBoolean(String key, boolean value) {
+        if (!put(key, value)) return;
+        mMainHandler.post(() -> {
+            for (Listener listener : mListeners) {
+                listener.onBooleanChanged(key, value);
+            }
+        });
+    }
+
+    public void putInt(String key, int value) {
+        if (!put(key, value)) return;
+        mMainHandler.post(() -> {
+            for (Listener listener : mListeners) {
+                listener.onIntChanged(key, value);
+            }
+        });
+    }
+
+    public void remove(String key) {
+        synchronized (this) {
+            if (!mValues.containsKey(key)) return;
+            mValues.remove(key);
+            markDirtyLocked(key);
+        }
+        mMainHandler.post(() -> {
+            for (Listener listener : mListeners) {
+                listener.onRemoved(key);
+            }
+        });
+    }
+
+    /**
+     * Remove every key that is not in the specified set, as a single batch.
+     */
+    public void retainKeys(Set<String> keys) {
+        final List<String> removed = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<String> it = mValues.keySet().iterator();
+            while (it.hasNext()) {
+                final String key = it.next();
+                if (keys.contains(key)) continue;
+                it.remove();
+                removed.add(key);
+            }
+            if (removed.isEmpty()) return;
+            for (String key : removed) {
+                markDirtyLocked(key);
+            }
+        }
+        mMainHandler.post(() -> {
+            for (String key : removed) {
+                for (Listener listener : mListeners) {
+                    listener.onRemoved(key);
+                }
+            }
+        });
+    }
+
+    public void registerListener(Listener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    public void unregisterListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Persist pending changes now, on the calling thread.
+     */
+    public void flush() {
+        // batches must reach the disk in the order they were taken
+        synchronized (mFlushLock) {
+            final Map<String, Object> batch = new HashMap<>();
+            synchronized (this) {
+                if (mDirty.isEmpty()) return;
+                if (mFile != null) {
+                    // the file is rewritten as a whole
+                    batch.putAll(mValues);
+                } else {
+                    for (String key : mDirty) {
+                        batch.put(key, mValues.get(key));
+                    }
+                }
+                mDirty.clear();
+                mLastFlush = SystemClock.uptimeMillis();
+            }
+            if (mFile != null) {
+                mFile.write(batch);
+                return;
+            }
+            final SharedPreferences.Editor editor = mPrefs.edit();
+            for (Map.Entry<String, Object> entry : batch.entrySet()) {
+                final Object value = entry.getValue();
+                if (value == null) {
+                    editor.remove(entry.getKey());
+                } else if (value instanceof Boolean) {
+                    editor.putBoolean(entry.getKey(), (Boolean) value);
+                } else if (value instanceof Integer) {
+                    editor.putInt(entry.getKey(), (Integer) value);
+                }
+            }
+            editor.commit();
+        }
+    }
+
+    /**
+     * @return whether the value changed
+     * @throws IllegalArgumentException if the state file has no slot for the
+     *         key, so a new setting can't silently lose its state
+     */
+    private synchronized boolean put(String key, Object value) {
+        if (!DeviceStateFile.canStore(key, value)) {
+            throw new IllegalArgumentException("No state file slot for " + key + "=" + value);
+        }
+        if (value.equals(mValues.get(key))) return false;
+        mValues.put(key, value);
+        markDirtyLocked(key);
+        return true;
+    }
+
+    private void markDirtyLocked(String key) {
+        mDirty.add(key);
+        if (mFlushScheduled) return;
+        mFlushScheduled = true;
+        final long delay = Math.max(0,
+                mLastFlush + FLUSH_INTERVAL_MS - SystemClock.uptimeMillis());
+        mFlushHandler.postDelayed(() -> {
+            synchronized (this) {
+                mFlushScheduled = false;
+            }
+            flush();
+        }, delay);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pixelage.device.DeviceSettings;
+
+/**
+ * Nodes mirrored as regular files under a root directory, e.g. a tmpfs tree
+ * holding /sys/devices/... for exercising the I/O layer without a device.
+ */
+public class DirectorySysfsBackend extends RealSysfsBackend {
+
+    private final String mRoot;
+
+    public DirectorySysfsBackend(String root) {
+        mRoot = root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+    }
+
+    @Override
+    public String resolve(String path) {
+        return mRoot + path;
+    }
+
+    @Override
+    public boolean truncateAfterWrite() {
+        return true;
+    }
+}
@@ -21,7 +21,6 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -41,8 +40,7 @@ import android.view.View;
 import android.view.WindowManager;
 import android.util.Log;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.IOException;
 import java.lang.Math;
 
 public class FPSInfoService extends Service {
@@ -51,9 +49,11 @@ public class FPSInfoService extends Service {
     private View mView;
     private Thread mCurFPSThread;
     private final String TAG = "FPSInfoService";
-    private String mFps = null;
+    // "fps: " followed by up to 4 integer digits, a dot and a fraction digit
+    private final char[] mFps = new char[11];
+    private int mFpsLength = 0;
 
-    private static final String MEASURED_FPS = "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/sde-crtc-0/measured_fps";
+    static final String MEASURED_FPS = "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/sde-crtc-0/measured_fps";
 
     private IDreamManager mDreamManager;
 
@@ -68,11 +68,8 @@ public class FPSInfoService extends Service {
 
         private final Handler mCurFPSHandler = new Handler(Looper.getMainLooper()) {
             public void handleMessage(Message msg) {
-                if (msg.obj == null) return;
                 if (msg.what == 1) {
-                    String msgData = (String) msg.obj;
-                    msgData = msgData.substring(0, Math.min(msgData.length(), 9));
-                    mFps = msgData;
+                    formatFps(msg.arg1);
                     mDataAvail = true;
                     updateDisplay();
                 }
@@ -99,7 +96,7 @@ public class FPSInfoService extends Service {
 
             mAscent = mOnlinePaint.ascent();
 
-            final String maxWidthStr="fps: 60.1";
+            final String maxWidthStr="fps: 120.0";
             mMaxWidth = (int) mOnlinePaint.measureText(maxWidthStr);
 
             updateDisplay();
@@ -122,8 +119,26 @@ public class FPSInfoService extends Service {
                     resolveSize(mNeededHeight, heightMeasureSpec));
         }
 
-        private String getFPSInfoString() {
-            return mFps;
+        /**
+         * Formats fps, in tenths, into mFps without allocating.
+         */
+        private void formatFps(int fps) {
+            final String prefix = "fps: ";
+            int pos = 0;
+            for (; pos < prefix.length(); pos++) {
+                mFps[pos] = prefix.charAt(pos);
+            }
+            int whole = Math.min(fps / 10, 9999);
+            int digits = 1;
+            for (int div = whole / 10; div > 0; div /= 10) digits++;
+            for (int i = pos + digits - 1; i >= pos; i--) {
+                mFps[i] = (char) ('0' + whole % 10);
+                whole /= 10;
+            }
+            pos += digits;
+            mFps[pos++] = '.';
+            mFps[pos++] = (char) ('0' + fps % 10);
+            mFpsLength = pos;
         }
 
         @Override
@@ -134,7 +149,7 @@ public class FPSInfoService extends Service {
             }
             final int LEFT = getWidth() - 1;
             final int y = mPaddingTop - (int)mAscent;
-            canvas.drawText(getFPSInfoString(),
+            canvas.drawText(mFps, 0, mFpsLength,
                     LEFT-mPaddingLeft-mMaxWidth,
                     y - 1, mOnlinePaint);
         }
@@ -174,13 +189,24 @@ public class FPSInfoService extends Service {
 
         @Override
         public void run() {
+            final SysfsNodePool pool = SysfsNodePool.getInstance();
+            try {
+                // keep the node open for as long as we are sampling it
+                pool.acquire(MEASURED_FPS);
+            } catch (IOException e) {
+                Log.e("FPSInfoService", "Failed to open " + MEASURED_FPS, e);
+            }
             try {
                 while (!mInterrupt) {
                     sleep(1000);
-                    String fpsVal = FPSInfoService.readOneLine();
-                    mHandler.sendMessage(mHandler.obtainMessage(1, fpsVal));
+                    final int fps = readFps();
+                    if (fps < 0) continue;
+                    mHandler.sendMessage(mHandler.obtainMessage(1, fps, 0));
                 }
-            } catch (InterruptedException ignored) { }
+            } catch (InterruptedException ignored) {
+            } finally {
+                pool.release(MEASURED_FPS);
+            }
         }
     }
 
@@ -212,8 +238,7 @@ public class FPSInfoService extends Service {
         wm.addView(mView, params);
 
         // declare service is running
-        final SharedPreferences prefs = Constants.getDESharedPrefs(this);
-        prefs.edit().putBoolean(PREF_KEY_FPS_STATE, true).commit();
+        DeviceStateRepository.getInstance(this).putBoolean(PREF_KEY_FPS_STATE, true);
     }
 
     @Override
@@ -225,8 +250,7 @@ public class FPSInfoService extends Service {
         unregisterReceiver(mScreenStateReceiver);
 
         // declare service isn't running
-        final SharedPreferences prefs = Constants.getDESharedPrefs(this);
-        prefs.edit().remove(PREF_KEY_FPS_STATE).commit();
+        DeviceStateRepository.getInstance(this).remove(PREF_KEY_FPS_STATE);
     }
 
     @Override
@@ -234,20 +258,11 @@ public class FPSInfoService extends Service {
         return null;
     }
 
-    private static String readOneLine() {
-        BufferedReader br;
-        String line;
-        try {
-            br = new BufferedReader(new FileReader(FPSInfoService.MEASURED_FPS), 512);
-            try {
-                line = br.readLine();
-            } finally {
-                br.close();
-            }
-        } catch (Exception e) {
-            return null;
-        }
-        return line;
+    /**
+     * @return the measured fps in tenths, or -1 if it can't be read
+     */
+    private static int readFps() {
+        return (int) Utils.readFixedPoint(MEASURED_FPS, 1, -1);
     }
 
     private final BroadcastReceiver mScreenStateReceiver = new BroadcastReceiver() {
@@ -298,7 +313,6 @@ public class FPSInfoService extends Service {
     }
 
     private void saveServiceState(boolean started) {
-        final SharedPreferences prefs = Constants.getDESharedPrefs(this);
-        prefs.edit().putBoolean(PREF_KEY_FPS_STATE, started).commit();
+        DeviceStateRepository.getInstance(this).putBoolean(PREF_KEY_FPS_STATE, started);
     }
 }
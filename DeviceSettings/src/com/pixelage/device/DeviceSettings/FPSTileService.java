@@ -17,34 +17,43 @@
 package com.pixelage.device.DeviceSettings;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.service.quicksettings.Tile;
 import android.service.quicksettings.TileService;
 
 // TODO: Add FPS drawables
 public class FPSTileService extends TileService
-        implements SharedPreferences.OnSharedPreferenceChangeListener {
+        implements DeviceStateRepository.Listener {
 
-    private SharedPreferences mPrefs;
+    private DeviceStateRepository mState;
     private boolean mIsShowing = false;
     private boolean mInternalStart = false;
 
     @Override
-    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)  {
+    public void onBooleanChanged(String key, boolean value) {
         if (!key.equals(FPSInfoService.PREF_KEY_FPS_STATE)) return;
+        onStateChanged(value);
+    }
+
+    @Override
+    public void onRemoved(String key) {
+        if (!key.equals(FPSInfoService.PREF_KEY_FPS_STATE)) return;
+        onStateChanged(false);
+    }
+
+    private void onStateChanged(boolean showing) {
         if (mInternalStart) {
             mInternalStart = false;
             return;
         }
-        mIsShowing = sharedPreferences.getBoolean(key, false);
+        mIsShowing = showing;
         updateTile();
     }
 
     @Override
     public void onStartListening() {
         super.onStartListening();
-        mPrefs = Constants.getDESharedPrefs(getApplicationContext());
-        mPrefs.registerOnSharedPreferenceChangeListener(this);
+        mState = DeviceStateRepository.getInstance(this);
+        mState.registerListener(this);
         mIsShowing = isRunning();
         updateTile();
     }
@@ -52,8 +61,8 @@ public class FPSTileService extends TileService
     @Override
     public void onStopListening() {
         super.onStopListening();
-        mPrefs.unregisterOnSharedPreferenceChangeListener(this);
-        mPrefs = null;
+        mState.unregisterListener(this);
+        mState = null;
     }
 
     @Override
@@ -74,7 +83,7 @@ public class FPSTileService extends TileService
     }
 
     private boolean isRunning() {
-        if (mPrefs == null) return false;
-        return mPrefs.getBoolean(FPSInfoService.PREF_KEY_FPS_STATE, false);
+        if (mState == null) return false;
+        return mState.getBoolean(FPSInfoService.PREF_KEY_FPS_STATE, false);
     }
 }
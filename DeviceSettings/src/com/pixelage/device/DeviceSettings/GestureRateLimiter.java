@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.util.SparseArray;
+
+import java.io.PrintWriter;
+
+/**
+ * Keeps a storm of touch gestures from holding the device awake.
+ *
+ * Every scan code has a token bucket holding up to a burst of gestures and
+ * refilling one token per refill period, gestures finding it empty are
+ * dropped. On top of that, all gestures share a budget of wakelock time per
+ * window; past it, gestures are still handled but their wakelocks are cut
+ * short or skipped. Both are read from system properties on every use so
+ * they can be tuned at runtime.
+ */
+final class GestureRateLimiter {
+
+    private static final String PROP_BURST = "persist.sys.device_settings.gesture_burst";
+    private static final String PROP_REFILL_MS = "persist.sys.device_settings.gesture_refill_ms";
+    private static final String PROP_BUDGET_MS =
+            "persist.sys.device_settings.gesture_wakelock_budget_ms";
+    private static final int DEFAULT_BURST = 3;
+    private static final int DEFAULT_REFILL_MS = 1000;
+    private static final int DEFAULT_BUDGET_MS = 15000;
+
+    private static final long WINDOW_MS = 60000;
+
+    private static final class Bucket {
+        int tokens;
+        long refilledAt;
+        long allowed;
+        long dropped;
+    }
+
+    private final SparseArray<Bucket> mBuckets = new SparseArray<>();
+
+    private long mWindowStart;
+    private long mWindowUsedMs;
+    // wakelock timeouts overlap, only time past the current one is charged
+    private long mHeldUntil;
+
+    private long mWakeLockMs;
+    private long mBudgetCapped;
+
+    /**
+     * Take a token for a gesture of the specified scan code.
+     * @return false if the gesture should be dropped
+     */
+    synchronized boolean tryAcquire(int scanCode) {
+        final long now = SystemClock.uptimeMillis();
+        final int burst = Math.max(1, SystemProperties.getInt(PROP_BURST, DEFAULT_BURST));
+        final int refillMs = Math.max(1,
+                SystemProperties.getInt(PROP_REFILL_MS, DEFAULT_REFILL_MS));
+
+        Bucket bucket = mBuckets.get(scanCode);
+        if (bucket == null) {
+            bucket = new Bucket();
+            bucket.tokens = burst;
+            bucket.refilledAt = now;
+            mBuckets.put(scanCode, bucket);
+        }
+        final long refills = (now - bucket.refilledAt) / refillMs;
+        if (refills > 0) {
+            bucket.tokens = (int) Math.min(burst, bucket.tokens + refills);
+            bucket.refilledAt += refills * refillMs;
+        }
+        if (bucket.tokens >= burst) {
+            // a full bucket doesn't bank the time it sat idle
+            bucket.refilledAt = now;
+        }
+        if (bucket.tokens == 0) {
+            bucket.dropped++;
+            return false;
+        }
+        bucket.tokens--;
+        bucket.allowed++;
+        return true;
+    }
+
+    /**
+     * Charge a wakelock against the budget of the current window.
+     * @param durationMs    The timeout the wakelock would be acquired with
+     * @return the timeout it may be acquired with, 0 if it must not be
+     *         acquired at all
+     */
+    synchronized long acquireWakeLock(long durationMs) {
+        final long now = SystemClock.uptimeMillis();
+        if (now - mWindowStart >= WINDOW_MS) {
+            mWindowStart = now;
+            mWindowUsedMs = 0;
+        }
+        final long budgetMs = SystemProperties.getInt(PROP_BUDGET_MS, DEFAULT_BUDGET_MS);
+        final long remainingMs = budgetMs - mWindowUsedMs;
+        final long extendsMs = Math.max(0, now + durationMs - Math.max(now, mHeldUntil));
+        if (extendsMs > 0 && remainingMs <= 0) {
+            mBudgetCapped++;
+            return 0;
+        }
+        long grantedMs = durationMs;
+        long chargedMs = extendsMs;
+        if (extendsMs > remainingMs) {
+            mBudgetCapped++;
+            grantedMs = Math.max(now, mHeldUntil) - now + remainingMs;
+            chargedMs = remainingMs;
+        }
+        mHeldUntil = Math.max(mHeldUntil, now + grantedMs);
+        mWindowUsedMs += chargedMs;
+        mWakeLockMs += chargedMs;
+        return grantedMs;
+    }
+
+    synchronized void reset() {
+        mBuckets.clear();
+        mWakeLockMs = 0;
+        mBudgetCapped = 0;
+    }
+
+    synchronized void dump(PrintWriter pw) {
+        pw.println("Gesture rate limiting:");
+        for (int i = 0; i < mBuckets.size(); i++) {
+            final Bucket bucket = mBuckets.valueAt(i);
+            pw.println("  scancode " + mBuckets.keyAt(i) + ": allowed=" + bucket.allowed
+                    + " dropped=" + bucket.dropped + " tokens=" + bucket.tokens);
+        }
+        pw.println("  wakelock ms=" + mWakeLockMs + " in window=" + mWindowUsedMs
+                + " capped=" + mBudgetCapped);
+    }
+}
@@ -18,27 +18,19 @@
 package com.pixelage.device.DeviceSettings;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.service.quicksettings.Tile;
 import android.service.quicksettings.TileService;
 
 import com.pixelage.device.DeviceSettings.ModeSwitch.HBMModeSwitch;
 
 public class HBMModeTileService extends TileService
-        implements SharedPreferences.OnSharedPreferenceChangeListener {
+        implements SysfsWatcher.Listener {
 
-    private SharedPreferences mPrefs;
     private Intent mHbmIntent;
-    private boolean mInternalStart = false;
 
     @Override
-    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)  {
-        if (!key.equals(HBMModeSwitch.PREF_KEY_HBM_STATE)) return;
-        if (mInternalStart) {
-            mInternalStart = false;
-            return;
-        }
-        updateState();
+    public void onNodeChanged(SysfsWatcher.Event event) {
+        updateState(event.asBoolean());
     }
 
     @Override
@@ -60,29 +52,29 @@ public class HBMModeTileService extends TileService
     @Override
     public void onStartListening() {
         super.onStartListening();
-        updateState();
-        mPrefs = Constants.getDESharedPrefs(getApplicationContext());
-        mPrefs.registerOnSharedPreferenceChangeListener(this);
+        final String file = HBMModeSwitch.getFile();
+        if (file == null) {
+            updateState(false);
+            return;
+        }
+        SysfsWatcher.getInstance().subscribe(file, this);
     }
 
     @Override
     public void onStopListening() {
         super.onStopListening();
-        mPrefs.unregisterOnSharedPreferenceChangeListener(this);
-        mPrefs = null;
+        SysfsWatcher.getInstance().unsubscribe(HBMModeSwitch.getFile(), this);
     }
 
     @Override
     public void onClick() {
         super.onClick();
-        mInternalStart = true;
         boolean enabled = HBMModeSwitch.isCurrentlyEnabled();
         HBMModeSwitch.setEnabled(!enabled, this);
-        updateState();
+        updateState(!enabled);
     }
 
-    private void updateState() {
-        boolean enabled = HBMModeSwitch.isCurrentlyEnabled();
+    private void updateState(boolean enabled) {
         if (!enabled) tryStopService();
         getQsTile().setState(enabled ? Tile.STATE_ACTIVE : Tile.STATE_INACTIVE);
         getQsTile().updateTile();
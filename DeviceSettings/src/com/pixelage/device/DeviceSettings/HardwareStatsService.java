@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.app.Activity;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+import android.os.UserHandle;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dumps the sysfs I/O statistics of this process, along with the slider and
+ * gesture statistics of the key handlers in the system server. Started at
+ * boot by {@link Startup}:
+ *
+ *   adb shell dumpsys activity service com.pixelage.device.DeviceSettings/.HardwareStatsService
+ *
+ * Pass "reset" to the dumpsys command to clear the statistics afterwards.
+ */
+public class HardwareStatsService extends Service {
+
+    private static final long KEY_HANDLER_TIMEOUT_MS = 2000;
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) { return null; }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        pw.println("Sysfs writes: committed=" + Utils.getWritesCommitted()
+                + " skipped=" + Utils.getWritesSkipped());
+        SysfsStats.getInstance().dump(pw);
+        final boolean reset = args != null && args.length > 0 && "reset".equals(args[0]);
+        dumpKeyHandlers(pw, reset);
+        if (reset) {
+            SysfsStats.getInstance().reset();
+            pw.println("Statistics reset");
+        }
+    }
+
+    private void dumpKeyHandlers(PrintWriter pw, boolean reset) {
+        final String[] result = new String[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        final Intent intent = new Intent(Constants.DUMP_STATS_ACTION)
+                .setPackage("android")
+                .putExtra(Constants.DUMP_STATS_EXTRA_RESET, reset);
+        // dump() runs on a binder thread, the result is delivered on the main thread
+        sendOrderedBroadcastAsUser(intent, UserHandle.SYSTEM, null, new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                result[0] = getResultData();
+                done.countDown();
+            }
+        }, null, Activity.RESULT_OK, null, null);
+        try {
+            if (!done.await(KEY_HANDLER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                pw.println("Key handlers didn't report in time");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (result[0] != null) pw.print(result[0]);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs sysfs writes on a single background thread so callers never block on
+ * the panel driver.
+ *
+ * Writes are applied in the order their node was first queued. Queuing a new
+ * value for a node that still has a pending write replaces that value, and
+ * both callers get the same future.
+ */
+public final class HardwareWriteQueue {
+
+    private static final HardwareWriteQueue sInstance = new HardwareWriteQueue();
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(r -> {
+        final Thread t = new Thread(r, "HardwareWriteQueue");
+        t.setDaemon(true);
+        return t;
+    });
+    private final LinkedHashMap<String, Pending> mPending = new LinkedHashMap<>();
+    private boolean mDraining;
+
+    private static final class Pending {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        String value;
+        boolean skipUnchanged;
+    }
+
+    private HardwareWriteQueue() { }
+
+    public static HardwareWriteQueue getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Queue a write to the specified file.
+     * @param filename      The filename
+     * @param value         The value
+     * @param skipUnchanged See {@link SysfsIo#writeValue(String, String, boolean)}
+     * @return              A future completed with whether the write succeeded
+     */
+    public CompletableFuture<Boolean> enqueue(String filename, String value,
+            boolean skipUnchanged) {
+        if (filename == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        synchronized (mPending) {
+            Pending pending = mPending.get(filename);
+            if (pending == null) {
+                pending = new Pending();
+                mPending.put(filename, pending);
+            }
+            pending.value = value;
+            pending.skipUnchanged = skipUnchanged;
+            if (!mDraining) {
+                mDraining = true;
+                mExecutor.execute(this::drain);
+            }
+            return pending.future;
+        }
+    }
+
+    /**
+     * @return the value waiting to be written to the file, or null if none
+     */
+    public String getPendingValue(String filename) {
+        synchronized (mPending) {
+            final Pending pending = mPending.get(filename);
+            return pending != null ? pending.value : null;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            final String filename;
+            final Pending pending;
+            final String value;
+            final boolean skipUnchanged;
+            synchronized (mPending) {
+                final Iterator<Map.Entry<String, Pending>> it = mPending.entrySet().iterator();
+                if (!it.hasNext()) {
+                    mDraining = false;
+                    return;
+                }
+                final Map.Entry<String, Pending> entry = it.next();
+                it.remove();
+                filename = entry.getKey();
+                pending = entry.getValue();
+                value = pending.value;
+                skipUnchanged = pending.skipUnchanged;
+            }
+            pending.future.complete(SysfsIo.writeValue(filename, value, skipUnchanged));
+        }
+    }
+}
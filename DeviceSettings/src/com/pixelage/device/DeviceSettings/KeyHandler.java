@@ -16,54 +16,50 @@
 
 package com.pixelage.device.DeviceSettings;
 
+import android.Manifest;
 import android.app.NotificationManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.media.AudioManager;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Trace;
 import android.os.VibrationEffect;
 import android.os.VibratorManager;
 import android.os.Vibrator;
-import android.provider.Settings;
-import android.util.SparseIntArray;
+import android.util.Log;
 import android.view.KeyEvent;
 
 import com.android.internal.os.DeviceKeyHandler;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
 public class KeyHandler implements DeviceKeyHandler {
 
     private static final String TAG = KeyHandler.class.getSimpleName();
 
-    private static final SparseIntArray sSupportedSliderZenModes = new SparseIntArray();
-    private static final SparseIntArray sSupportedSliderRingModes = new SparseIntArray();
-    private static final SparseIntArray sSupportedSliderHaptics = new SparseIntArray();
-    static {
-        sSupportedSliderZenModes.put(Constants.KEY_VALUE_TOTAL_SILENCE, Settings.Global.ZEN_MODE_NO_INTERRUPTIONS);
-        sSupportedSliderZenModes.put(Constants.KEY_VALUE_SILENT, Settings.Global.ZEN_MODE_OFF);
-        sSupportedSliderZenModes.put(Constants.KEY_VALUE_PRIORTY_ONLY, Settings.Global.ZEN_MODE_IMPORTANT_INTERRUPTIONS);
-        sSupportedSliderZenModes.put(Constants.KEY_VALUE_VIBRATE, Settings.Global.ZEN_MODE_OFF);
-        sSupportedSliderZenModes.put(Constants.KEY_VALUE_NORMAL, Settings.Global.ZEN_MODE_OFF);
-
-        sSupportedSliderRingModes.put(Constants.KEY_VALUE_TOTAL_SILENCE, AudioManager.RINGER_MODE_NORMAL);
-        sSupportedSliderRingModes.put(Constants.KEY_VALUE_SILENT, AudioManager.RINGER_MODE_SILENT);
-        sSupportedSliderRingModes.put(Constants.KEY_VALUE_PRIORTY_ONLY, AudioManager.RINGER_MODE_NORMAL);
-        sSupportedSliderRingModes.put(Constants.KEY_VALUE_VIBRATE, AudioManager.RINGER_MODE_VIBRATE);
-        sSupportedSliderRingModes.put(Constants.KEY_VALUE_NORMAL, AudioManager.RINGER_MODE_NORMAL);
-
-        sSupportedSliderHaptics.put(Constants.KEY_VALUE_TOTAL_SILENCE, VibrationEffect.EFFECT_THUD);
-        sSupportedSliderHaptics.put(Constants.KEY_VALUE_SILENT, VibrationEffect.EFFECT_DOUBLE_CLICK);
-        sSupportedSliderHaptics.put(Constants.KEY_VALUE_PRIORTY_ONLY, VibrationEffect.EFFECT_POP);
-        sSupportedSliderHaptics.put(Constants.KEY_VALUE_VIBRATE, VibrationEffect.EFFECT_HEAVY_CLICK);
-        sSupportedSliderHaptics.put(Constants.KEY_VALUE_NORMAL, -1);
-    }
-
     private final Context mContext;
     private final NotificationManager mNotificationManager;
     private final AudioManager mAudioManager;
     private final HandlerThread mHandlerThread = new HandlerThread("KeyHandlerThread");
     private final Handler mHandler;
-    private boolean mNeedsRun;
+    private final SliderConfigSnapshot.Tracker mConfig;
+    private final RingerModeVerifier mRingerModeVerifier;
+    private final MediaVolumeMemory mMediaVolume;
+    private final PocketDetector mPocketDetector;
+    private volatile boolean mInPocket;
+    private final SliderLatencyStats mLatencyStats = new SliderLatencyStats();
+    private final Object mPendingLock = new Object();
+    private int mPendingScanCode;
+    private int mPendingMode;
+    private boolean mPendingHapticDone;
+    private long mPendingSample;
+    // bumped on every publish, so a deferred one doesn't override a newer state
+    private int mPublishSeq;
     private Vibrator mVibrator;
     private int mPrevKeyCode = 0;
 
@@ -80,26 +76,42 @@ public class KeyHandler implements DeviceKeyHandler {
 
         mHandlerThread.start();
         mHandler = new Handler(mHandlerThread.getLooper());
+        mConfig = new SliderConfigSnapshot.Tracker(context, mHandler);
+        mRingerModeVerifier = new RingerModeVerifier(context, mAudioManager, mHandler);
+        mMediaVolume = new MediaVolumeMemory(context, mAudioManager, mHandler);
+        mPocketDetector = PocketDetector.getInstance(context);
+        context.registerReceiver(mDumpReceiver, new IntentFilter(Constants.DUMP_STATS_ACTION),
+                Manifest.permission.DUMP, mHandler, Context.RECEIVER_EXPORTED);
     }
 
-    private boolean hasSetupCompleted() {
-        return Settings.Secure.getInt(mContext.getContentResolver(),
-                Settings.Secure.USER_SETUP_COMPLETE, 0) != 0;
-    }
+    private final BroadcastReceiver mDumpReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final StringWriter sw = new StringWriter();
+            final PrintWriter pw = new PrintWriter(sw);
+            mLatencyStats.dump(pw);
+            mRingerModeVerifier.dump(pw);
+            pw.flush();
+            if (intent.getBooleanExtra(Constants.DUMP_STATS_EXTRA_RESET, false)) {
+                mLatencyStats.reset();
+                mRingerModeVerifier.resetStats();
+            }
+            final String data = getResultData();
+            setResultData(data != null ? data + sw : sw.toString());
+        }
+    };
 
     @Override
     public KeyEvent handleKeyEvent(KeyEvent event) {
         final int scanCode = event.getScanCode();
-        final String keyCode = Constants.sKeyMap.get(scanCode);
-        int keyCodeValue;
+        final SliderConfigSnapshot config = mConfig.get();
+        final int keyCodeValue = config.getMode(scanCode);
 
-        try {
-            keyCodeValue = Constants.getPreferenceInt(mContext, keyCode);
-        } catch (Exception e) {
+        if (keyCodeValue == -1) {
             return event;
         }
 
-        if (!hasSetupCompleted()) {
+        if (!config.setupComplete) {
             return event;
         }
 
@@ -108,58 +120,114 @@ public class KeyHandler implements DeviceKeyHandler {
             return event;
         }
 
-        mNeedsRun = false;
-        mHandler.removeCallbacksAndMessages(null);
-
-        if (mPrevKeyCode == Constants.KEY_VALUE_TOTAL_SILENCE && keyCodeValue != mPrevKeyCode) {
-            // if previous was total silence we need to vibrate after setRingerModeInternal
-            // for it to actually fire.
-            // we also have to exit it before setRingerModeInternal because it sets it internally
-            final int targetMode = sSupportedSliderRingModes.get(keyCodeValue);
-            mNotificationManager.setZenMode(sSupportedSliderZenModes.get(keyCodeValue), null, TAG);
-            mAudioManager.setRingerModeInternal(targetMode);
-            doHapticFeedback(sSupportedSliderHaptics.get(keyCodeValue));
-            // make sure ringer mode was set correctly (race condition because setZenMode is async)
-            mNeedsRun = true;
-            mHandler.postDelayed(() -> {
-                if (mAudioManager.getRingerModeInternal() != targetMode && mNeedsRun) {
-                    mAudioManager.setRingerModeInternal(targetMode);
-                }
-            }, 200); // 200ms is long enough even if the system is very busy
-        } else {
-            // here we have to vibrate before setting anything else.
-            // also setRingerModeInternal before setZenMode because it could set the ringer mode
-            doHapticFeedback(sSupportedSliderHaptics.get(keyCodeValue));
-            mAudioManager.setRingerModeInternal(sSupportedSliderRingModes.get(keyCodeValue));
-            mNotificationManager.setZenMode(sSupportedSliderZenModes.get(keyCodeValue), null, TAG);
+        Trace.beginSection("KeyHandler.handleKeyEvent");
+        final long sample = mLatencyStats.begin(event.getEventTimeNanos());
+        final SliderTransitionTable.Transition transition;
+        final boolean hapticNow;
+        synchronized (mPendingLock) {
+            transition = config.transitions.get(mPrevKeyCode, keyCodeValue);
+            if (transition == null) {
+                Trace.endSection();
+                return event;
+            }
+            // haptics don't fire while still in total silence,
+            // the transition takes care of it once it is left
+            hapticNow = mPrevKeyCode != Constants.KEY_VALUE_TOTAL_SILENCE;
+            mPendingScanCode = scanCode;
+            mPendingMode = keyCodeValue;
+            mPendingHapticDone = hapticNow;
+            mPendingSample = sample;
+        }
+        if (hapticNow) {
+            doHapticFeedback(transition.haptic);
         }
 
-        if (Constants.getIsMuteMediaEnabled(mContext)) {
-            final int max = mAudioManager.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
-            final int curr = mAudioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
-            if (keyCodeValue == Constants.KEY_VALUE_SILENT) {
-                // going into silent:
-                // saving current media volume and setting to 0
-                Constants.setLastMediaLevel(mContext, Math.round((float)curr * 100f / (float)max));
-                mAudioManager.setStreamVolume(AudioManager.STREAM_MUSIC,
-                        0, AudioManager.FLAG_SHOW_UI);
-            } else if (mPrevKeyCode == Constants.KEY_VALUE_SILENT && curr == 0) {
-                // going out of silent:
-                // setting media volume back if and only if current volume is still 0
-                final int last = Constants.getLastMediaLevel(mContext);
-                mAudioManager.setStreamVolume(AudioManager.STREAM_MUSIC,
-                        Math.round((float)max * (float)last / 100f), AudioManager.FLAG_SHOW_UI);
+        // a flick goes through every position, only the one the slider
+        // settles in is applied
+        mHandler.removeCallbacks(mApplyPending);
+        mHandler.postDelayed(mApplyPending, config.settleMs);
+        // have the batched proximity samples delivered meanwhile
+        mPocketDetector.flush(null);
+        Trace.endSection();
+        return null;
+    }
+
+    private final Runnable mApplyPending = () -> {
+        final int scanCode;
+        final int keyCodeValue;
+        final boolean hapticDone;
+        final int prevKeyCode;
+        final long sample;
+        synchronized (mPendingLock) {
+            scanCode = mPendingScanCode;
+            keyCodeValue = mPendingMode;
+            hapticDone = mPendingHapticDone;
+            prevKeyCode = mPrevKeyCode;
+            sample = mPendingSample;
+        }
+        final SliderConfigSnapshot config = mConfig.get();
+        final SliderTransitionTable.Transition transition =
+                config.transitions.get(prevKeyCode, keyCodeValue);
+        if (transition == null) return;
+
+        Trace.beginSection("KeyHandler.applySlider");
+        mLatencyStats.mark(sample, SliderLatencyStats.STAGE_APPLY);
+
+        mRingerModeVerifier.cancel();
+
+        for (byte op : transition.ops) {
+            switch (op) {
+                case SliderTransitionTable.OP_HAPTIC:
+                    if (!hapticDone) doHapticFeedback(transition.haptic);
+                    break;
+                case SliderTransitionTable.OP_RINGER:
+                    mAudioManager.setRingerModeInternal(transition.ringerMode);
+                    mLatencyStats.mark(sample, SliderLatencyStats.STAGE_RINGER);
+                    break;
+                case SliderTransitionTable.OP_ZEN:
+                    mNotificationManager.setZenMode(transition.zenMode, null, TAG);
+                    mLatencyStats.mark(sample, SliderLatencyStats.STAGE_ZEN);
+                    break;
+                case SliderTransitionTable.OP_VERIFY_RINGER:
+                    // make sure ringer mode was set correctly (race condition because setZenMode is async)
+                    mRingerModeVerifier.arm(transition.ringerMode);
+                    break;
+                case SliderTransitionTable.OP_MUTE_MEDIA:
+                    mMediaVolume.mute();
+                    break;
+                case SliderTransitionTable.OP_UNMUTE_MEDIA:
+                    mMediaVolume.unmute();
+                    break;
+                case SliderTransitionTable.OP_PUBLISH:
+                    publish(scanCode, keyCodeValue, config.dialogEnabled && !mInPocket, sample);
+                    break;
             }
         }
-        if (Constants.getIsSliderDialogEnabled(mContext))
-            sendNotification(scanCode, keyCodeValue);
 
-        mPrevKeyCode = keyCodeValue;
-        return null;
+        synchronized (mPendingLock) {
+            mPrevKeyCode = keyCodeValue;
+        }
+        Trace.endSection();
+    };
+
+    private void publish(int position, int mode, boolean showDialog, long sample) {
+        final int seq = ++mPublishSeq;
+        if (!showDialog || !mPocketDetector.isInPocket()) {
+            publishState(position, mode, showDialog);
+            mLatencyStats.mark(sample, SliderLatencyStats.STAGE_PUBLISH);
+            return;
+        }
+        // the batched samples may be stale, e.g. when the phone just left the
+        // pocket, check again once they have been delivered
+        mPocketDetector.flush(() -> mHandler.post(() -> {
+            if (seq != mPublishSeq) return;
+            publishState(position, mode, !mPocketDetector.isInPocket());
+            mLatencyStats.mark(sample, SliderLatencyStats.STAGE_PUBLISH);
+        }));
     }
 
     public void onPocketStateChanged(boolean inPocket) {
-        // do nothing
+        mInPocket = inPocket;
     }
 
     private void doHapticFeedback(int effect) {
@@ -168,10 +236,17 @@ public class KeyHandler implements DeviceKeyHandler {
         }
     }
 
-    private void sendNotification(int position, int mode) {
-        final Intent intent = new Intent(Constants.SLIDER_UPDATE_ACTION);
-        intent.putExtra("position", position);
-        intent.putExtra("mode", mode);
-        mContext.sendBroadcast(intent);
+    private void publishState(int position, int mode, boolean showDialog) {
+        final Bundle state = new Bundle();
+        state.putInt(SliderStateProvider.KEY_POSITION, position);
+        state.putInt(SliderStateProvider.KEY_MODE, mode);
+        state.putBoolean(SliderStateProvider.KEY_SHOW_DIALOG, showDialog);
+        try {
+            mContext.getContentResolver().call(SliderStateProvider.CONTENT_URI,
+                    SliderStateProvider.METHOD_SET, null, state);
+        } catch (IllegalArgumentException e) {
+            // provider isn't available yet
+            Log.w(TAG, "Failed to publish slider state", e);
+        }
     }
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioDeviceAttributes;
+import android.media.AudioManager;
+import android.media.VolumeInfo;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.provider.Settings;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Media volume levels saved by the mute media feature, per user and output
+ * device. Muting saves the level of the device media is routed to, un-muting
+ * restores every device that has a saved level and is still muted, even if
+ * media has been routed elsewhere since, and forgets the saved levels.
+ *
+ * Restoring a device media isn't routed to uses AudioManager's
+ * setDeviceVolume(), available from Android 14 on; below that, such levels
+ * are dropped.
+ *
+ * The saved levels live in memory and are written to Settings.System a few
+ * seconds after they change. Must only be used on the handler thread.
+ */
+final class MediaVolumeMemory {
+
+    private static final String TAG = "MediaVolumeMemory";
+
+    // "<device type>,<device address>,<level in percent>" per saved device,
+    // separated by ';', the address being Uri encoded
+    private static final String SETTING_LEVELS = "slider_mute_media_levels";
+    private static final long PERSIST_DELAY_MS = 5000;
+
+    private static final AudioAttributes MEDIA = new AudioAttributes.Builder()
+            .setUsage(AudioAttributes.USAGE_MEDIA)
+            .build();
+
+    private static final class Saved {
+        // null if unknown, for the level saved before devices were tracked
+        final AudioDeviceAttributes device;
+        final int level;
+
+        Saved(AudioDeviceAttributes device, int level) {
+            this.device = device;
+            this.level = level;
+        }
+    }
+
+    private final Context mContext;
+    private final AudioManager mAudioManager;
+    private final Handler mHandler;
+    private final SparseArray<List<Saved>> mSaved = new SparseArray<>();
+    private final SparseBooleanArray mDirty = new SparseBooleanArray();
+
+    MediaVolumeMemory(Context context, AudioManager audioManager, Handler handler) {
+        mContext = context;
+        mAudioManager = audioManager;
+        mHandler = handler;
+    }
+
+    /**
+     * Save the media volume of the current output device and mute it.
+     */
+    void mute() {
+        final int userId = ActivityManager.getCurrentUser();
+        final AudioDeviceAttributes device = getCurrentDevice();
+        final int curr = mAudioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
+        // already at 0: keep the level saved earlier, if any, media kept at 0
+        // on purpose stays there when un-muting
+        if (curr != 0 && device != null) {
+            final int max = mAudioManager.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
+            final List<Saved> saved = get(userId);
+            saved.removeIf(s -> s.device == null || isSameDevice(s.device, device));
+            saved.add(new Saved(device, Math.round((float)curr * 100f / (float)max)));
+            markDirty(userId);
+        }
+        mAudioManager.setStreamVolume(AudioManager.STREAM_MUSIC, 0, AudioManager.FLAG_SHOW_UI);
+    }
+
+    /**
+     * Restore the saved media volume of every device that is still muted.
+     */
+    void unmute() {
+        final int userId = ActivityManager.getCurrentUser();
+        final List<Saved> saved = get(userId);
+        if (saved.isEmpty()) return;
+
+        final AudioDeviceAttributes current = getCurrentDevice();
+        final int max = mAudioManager.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
+        for (Saved s : saved) {
+            final int index = Math.round((float)max * (float)s.level / 100f);
+            if (s.device == null || isSameDevice(s.device, current)) {
+                if (mAudioManager.getStreamVolume(AudioManager.STREAM_MUSIC) != 0) continue;
+                mAudioManager.setStreamVolume(AudioManager.STREAM_MUSIC, index,
+                        AudioManager.FLAG_SHOW_UI);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+                final VolumeInfo volume = mAudioManager.getDeviceVolume(
+                        new VolumeInfo.Builder(AudioManager.STREAM_MUSIC).build(), s.device);
+                if (volume.getVolumeIndex() != 0) continue;
+                mAudioManager.setDeviceVolume(new VolumeInfo.Builder(AudioManager.STREAM_MUSIC)
+                        .setVolumeIndex(index)
+                        .build(), s.device);
+            } else {
+                Log.w(TAG, "Can't restore media volume of " + s.device + ", not routed to");
+            }
+        }
+        saved.clear();
+        markDirty(userId);
+    }
+
+    private final Runnable mPersist = () -> {
+        for (int i = 0; i < mDirty.size(); i++) {
+            final int userId = mDirty.keyAt(i);
+            Settings.System.putStringForUser(mContext.getContentResolver(),
+                    SETTING_LEVELS, encode(mSaved.get(userId)), userId);
+        }
+        mDirty.clear();
+    };
+
+    private void markDirty(int userId) {
+        mDirty.put(userId, true);
+        if (!mHandler.hasCallbacks(mPersist)) {
+            mHandler.postDelayed(mPersist, PERSIST_DELAY_MS);
+        }
+    }
+
+    private List<Saved> get(int userId) {
+        List<Saved> saved = mSaved.get(userId);
+        if (saved == null) {
+            saved = load(userId);
+            mSaved.put(userId, saved);
+        }
+        return saved;
+    }
+
+    private List<Saved> load(int userId) {
+        final List<Saved> saved = new ArrayList<>();
+        final String value = Settings.System.getStringForUser(mContext.getContentResolver(),
+                SETTING_LEVELS, userId);
+        if (value == null) {
+            // saved before devices were tracked, only if media got muted back then,
+            // moved over to the new setting
+            final String legacy = Settings.System.getStringForUser(
+                    mContext.getContentResolver(), Constants.NOTIF_SLIDER_MUTE_MEDIA_LEVEL_KEY,
+                    userId);
+            if (legacy == null) return saved;
+            try {
+                saved.add(new Saved(null, Integer.parseInt(legacy)));
+            } catch (NumberFormatException e) {
+                // nothing to restore
+            }
+            Settings.System.putStringForUser(mContext.getContentResolver(),
+                    SETTING_LEVELS, encode(saved), userId);
+            Settings.System.putStringForUser(mContext.getContentResolver(),
+                    Constants.NOTIF_SLIDER_MUTE_MEDIA_LEVEL_KEY, null, userId);
+            return saved;
+        }
+        for (String entry : value.split(";")) {
+            final String[] fields = entry.split(",", -1);
+            if (fields.length != 3) continue;
+            try {
+                final int level = Integer.parseInt(fields[2]);
+                saved.add(new Saved(fields[0].isEmpty() ? null
+                        : new AudioDeviceAttributes(AudioDeviceAttributes.ROLE_OUTPUT,
+                                Integer.parseInt(fields[0]), Uri.decode(fields[1])), level));
+            } catch (IllegalArgumentException e) {
+                // skip the entry
+            }
+        }
+        return saved;
+    }
+
+    private static String encode(List<Saved> saved) {
+        final StringBuilder value = new StringBuilder();
+        for (Saved s : saved) {
+            if (value.length() > 0) value.append(';');
+            if (s.device != null) {
+                value.append(s.device.getType())
+                        .append(',').append(Uri.encode(s.device.getAddress()));
+            } else {
+                value.append(',');
+            }
+            value.append(',').append(s.level);
+        }
+        return value.toString();
+    }
+
+    private static boolean isSameDevice(AudioDeviceAttributes a, AudioDeviceAttributes b) {
+        return b != null && a.getType() == b.getType() && a.getAddress().equals(b.getAddress());
+    }
+
+    private AudioDeviceAttributes getCurrentDevice() {
+        final List<AudioDeviceAttributes> devices = mAudioManager.getDevicesForAttributes(MEDIA);
+        return devices.isEmpty() ? null : devices.get(0);
+    }
+}
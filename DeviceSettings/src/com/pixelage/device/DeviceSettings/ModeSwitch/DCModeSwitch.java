@@ -17,27 +17,27 @@
 */
 package com.pixelage.device.DeviceSettings.ModeSwitch;
 
-import android.content.SharedPreferences;
 import android.content.Context;
 
-import com.pixelage.device.DeviceSettings.Constants;
+import com.pixelage.device.DeviceSettings.CapabilityRegistry;
+import com.pixelage.device.DeviceSettings.DeviceStateRepository;
 import com.pixelage.device.DeviceSettings.Utils;
 
 public class DCModeSwitch {
 
-    private static final String FILE = "/sys/devices/platform/soc/soc:qcom,dsi-display-primary/dc_dim";
+    public static final String FILE = "/sys/devices/platform/soc/soc:qcom,dsi-display-primary/dc_dim";
 
     public static final String KEY_DC_SWITCH = "dc";
 
     public static String getFile() {
-        if (Utils.fileWritable(FILE)) {
+        if (CapabilityRegistry.getInstance().isWritable(FILE)) {
             return FILE;
         }
         return null;
     }
 
     public static boolean isSupported() {
-        return Utils.fileWritable(getFile());
+        return getFile() != null;
     }
 
     public static boolean isCurrentlyEnabled() {
@@ -45,8 +45,7 @@ public class DCModeSwitch {
     }
 
     public static void setEnabled(boolean enabled, Context context) {
-        Utils.writeValue(getFile(), enabled ? "1" : "0");
-        SharedPreferences prefs = Constants.getDESharedPrefs(context);
-        prefs.edit().putBoolean(KEY_DC_SWITCH, enabled).commit();
+        Utils.writeValueAsync(getFile(), enabled ? "1" : "0", true);
+        DeviceStateRepository.getInstance(context).putBoolean(KEY_DC_SWITCH, enabled);
     }
 }
@@ -19,26 +19,26 @@ package com.pixelage.device.DeviceSettings.ModeSwitch;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 
-import com.pixelage.device.DeviceSettings.Constants;
+import com.pixelage.device.DeviceSettings.CapabilityRegistry;
+import com.pixelage.device.DeviceSettings.DeviceStateRepository;
 import com.pixelage.device.DeviceSettings.Utils;
 
 public class HBMModeSwitch {
     
-    private static final String FILE = "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/card0-DSI-1/hbm";
+    public static final String FILE = "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/card0-DSI-1/hbm";
 
     public static final String PREF_KEY_HBM_STATE = "hbm";
 
     public static String getFile() {
-        if (Utils.fileWritable(FILE)) {
+        if (CapabilityRegistry.getInstance().isWritable(FILE)) {
             return FILE;
         }
         return null;
     }
 
     public static boolean isSupported() {
-        return Utils.fileWritable(getFile());
+        return getFile() != null;
     }
 
     public static boolean isCurrentlyEnabled() {
@@ -46,12 +46,11 @@ public class HBMModeSwitch {
     }
 
     public static void setEnabled(boolean enabled, Context context) {
-        Utils.writeValue(getFile(), enabled ? "5" : "0");
+        Utils.writeValueAsync(getFile(), enabled ? "5" : "0", true);
         Intent hbmIntent = new Intent(context,
                 com.pixelage.device.DeviceSettings.HBMModeService.class);
         if (enabled) context.startService(hbmIntent);
         else context.stopService(hbmIntent);
-        final SharedPreferences prefs = Constants.getDESharedPrefs(context);
-        prefs.edit().putBoolean(PREF_KEY_HBM_STATE, enabled).commit();
+        DeviceStateRepository.getInstance(context).putBoolean(PREF_KEY_HBM_STATE, enabled);
     }
 }
@@ -15,17 +15,17 @@
  */
 package com.pixelage.device.DeviceSettings.ModeSwitch;
 
-import android.content.SharedPreferences;
 import android.content.Context;
 import android.os.Build;
 
-import com.pixelage.device.DeviceSettings.Constants;
+import com.pixelage.device.DeviceSettings.CapabilityRegistry;
+import com.pixelage.device.DeviceSettings.DeviceStateRepository;
 import com.pixelage.device.DeviceSettings.R;
 import com.pixelage.device.DeviceSettings.Utils;
 
 public class ReadingModeSwitch {
 
-    private static final String FILE = "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/card0-DSI-1/reading";
+    public static final String FILE = "/sys/devices/platform/soc/ae00000.qcom,mdss_mdp/drm/card0/card0-DSI-1/reading";
 
     public static final String KEY_READING_SWITCH = "reading_mode";
     public static final int STATE_DISABLED = 0;
@@ -33,7 +33,7 @@ public class ReadingModeSwitch {
     public static final int STATE_ENABLED_HIGH = 2;
 
     public static String getFile() {
-        if (Utils.fileWritable(FILE)) {
+        if (CapabilityRegistry.getInstance().isWritable(FILE)) {
             return FILE;
         }
         return null;
@@ -42,16 +42,15 @@ public class ReadingModeSwitch {
     public static boolean isSupported(Context context) {
         boolean deviceSupported = context.getResources().getBoolean(
                 R.bool.supports_reading_mode);
-        return deviceSupported && Utils.fileWritable(getFile());
+        return deviceSupported && getFile() != null;
     }
 
     public static void setState(int state, Context context) {
-        Utils.writeValue(getFile(), String.valueOf(state));
-        SharedPreferences prefs = Constants.getDESharedPrefs(context);
-        prefs.edit().putInt(KEY_READING_SWITCH, state).commit();
+        Utils.writeValueAsync(getFile(), String.valueOf(state), true);
+        DeviceStateRepository.getInstance(context).putInt(KEY_READING_SWITCH, state);
     }
 
     public static int getState(Context context) {
-        return Integer.parseInt(Utils.getFileValue(getFile(), String.valueOf(STATE_DISABLED)));
+        return Utils.readInt(getFile(), STATE_DISABLED);
     }
 }
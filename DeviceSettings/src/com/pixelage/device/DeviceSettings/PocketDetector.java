@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener2;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * Tells whether the device is in a pocket, from the proximity sensor.
+ *
+ * The sensor is only listened to while the screen is off, batched in the
+ * hardware FIFO so the AP isn't woken for every sample. The device counts as
+ * in a pocket once the sensor has been covered for {@link #POCKET_MIN_MS}, by
+ * the sensor timestamps, so a hand briefly over the sensor doesn't count.
+ *
+ * Batched samples can be late, so before dropping a user action because of
+ * the pocket, callers should {@link #flush(Runnable)} and check again.
+ */
+final class PocketDetector {
+
+    private static final String TAG = "PocketDetector";
+
+    private static final int SAMPLING_PERIOD_US = 200000;
+    private static final int MAX_REPORT_LATENCY_US = 5000000;
+    private static final long POCKET_MIN_MS = 1500;
+    private static final long FLUSH_TIMEOUT_MS = 100;
+
+    private static PocketDetector sInstance;
+
+    private final SensorManager mSensorManager;
+    private final Sensor mSensor;
+    private final HandlerThread mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_FOREGROUND);
+    private final Handler mHandler;
+
+    private boolean mListening;
+    // sensor timestamp the sensor got covered at, or 0 while uncovered
+    private long mNearSince;
+    private long mLastEventAt;
+    private final ArrayList<Runnable> mFlushCallbacks = new ArrayList<>();
+
+    static synchronized PocketDetector getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PocketDetector(context.getApplicationContext() != null
+                    ? context.getApplicationContext() : context);
+        }
+        return sInstance;
+    }
+
+    private PocketDetector(Context context) {
+        mSensorManager = context.getSystemService(SensorManager.class);
+        Sensor sensor = mSensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY, false);
+        if (sensor == null) {
+            sensor = mSensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY);
+        }
+        mSensor = sensor;
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        if (mSensor == null) {
+            Log.w(TAG, "No proximity sensor");
+            return;
+        }
+
+        final IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        context.registerReceiver(mScreenReceiver, filter, null, mHandler);
+        // the screen may already be off, e.g. when the system server restarted
+        final PowerManager pm = context.getSystemService(PowerManager.class);
+        mHandler.post(() -> setListening(!pm.isInteractive()));
+    }
+
+    private final BroadcastReceiver mScreenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            setListening(Intent.ACTION_SCREEN_OFF.equals(intent.getAction()));
+        }
+    };
+
+    private final SensorEventListener2 mListener = new SensorEventListener2() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            final boolean near = event.values[0] < mSensor.getMaximumRange();
+            synchronized (PocketDetector.this) {
+                if (!near) {
+                    mNearSince = 0;
+                } else if (mNearSince == 0) {
+                    mNearSince = event.timestamp;
+                }
+                mLastEventAt = event.timestamp;
+            }
+        }
+
+        @Override
+        public void onFlushCompleted(Sensor sensor) {
+            runFlushCallback();
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
+    };
+
+    private final Runnable mFlushTimeout = this::runFlushCallback;
+
+    /**
+     * Whether the device is in a pocket, by the samples delivered so far.
+     */
+    synchronized boolean isInPocket() {
+        if (!mListening || mNearSince == 0) return false;
+        // the sensor is on-change, so it is still covered until it reports otherwise
+        final long coveredMs = (Math.max(mLastEventAt, SystemClock.elapsedRealtimeNanos())
+                - mNearSince) / 1000000;
+        return coveredMs >= POCKET_MIN_MS;
+    }
+
+    /**
+     * Deliver the batched samples, then run the callback, if any, on the
+     * detector thread. The callback also runs if the sensor doesn't complete
+     * the flush in time. Without a callback, nothing is done unless samples
+     * are being batched.
+     */
+    void flush(Runnable callback) {
+        synchronized (this) {
+            if (callback == null && !mListening) return;
+            if (callback != null) mFlushCallbacks.add(callback);
+            if (!mListening) {
+                mHandler.post(mFlushTimeout);
+                return;
+            }
+        }
+        mHandler.removeCallbacks(mFlushTimeout);
+        mHandler.postDelayed(mFlushTimeout, FLUSH_TIMEOUT_MS);
+        if (!mSensorManager.flush(mListener)) {
+            mHandler.removeCallbacks(mFlushTimeout);
+            mHandler.post(mFlushTimeout);
+        }
+    }
+
+    private void runFlushCallback() {
+        final Runnable[] callbacks;
+        synchronized (this) {
+            callbacks = mFlushCallbacks.toArray(new Runnable[0]);
+            mFlushCallbacks.clear();
+        }
+        mHandler.removeCallbacks(mFlushTimeout);
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    private void setListening(boolean listening) {
+        synchronized (this) {
+            if (mListening == listening) return;
+            mListening = listening;
+            mNearSince = 0;
+            mLastEventAt = 0;
+        }
+        if (listening) {
+            mSensorManager.registerListener(mListener, mSensor, SAMPLING_PERIOD_US,
+                    MAX_REPORT_LATENCY_US, mHandler);
+        } else {
+            mSensorManager.unregisterListener(mListener);
+            runFlushCallback();
+        }
+    }
+}
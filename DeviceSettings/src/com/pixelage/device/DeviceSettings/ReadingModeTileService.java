@@ -16,26 +16,17 @@
 package com.pixelage.device.DeviceSettings;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.service.quicksettings.Tile;
 import android.service.quicksettings.TileService;
 
 import com.pixelage.device.DeviceSettings.ModeSwitch.ReadingModeSwitch;
 
 public class ReadingModeTileService extends TileService
-        implements SharedPreferences.OnSharedPreferenceChangeListener {
-
-    private SharedPreferences mPrefs;
-    private boolean mInternalStart = false;
+        implements SysfsWatcher.Listener {
 
     @Override
-    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)  {
-        if (!key.equals(ReadingModeSwitch.KEY_READING_SWITCH)) return;
-        if (mInternalStart) {
-            mInternalStart = false;
-            return;
-        }
-        refreshState();
+    public void onNodeChanged(SysfsWatcher.Event event) {
+        refreshState(event.asInt(ReadingModeSwitch.STATE_DISABLED));
     }
 
     @Override
@@ -56,32 +47,30 @@ public class ReadingModeTileService extends TileService
     @Override
     public void onStartListening() {
         super.onStartListening();
-        refreshState();
-        mPrefs = Constants.getDESharedPrefs(getApplicationContext());
-        mPrefs.registerOnSharedPreferenceChangeListener(this);
+        final String file = ReadingModeSwitch.getFile();
+        if (file == null) {
+            // unsupported, there is nothing to watch
+            refreshState(ReadingModeSwitch.STATE_DISABLED);
+            return;
+        }
+        SysfsWatcher.getInstance().subscribe(file, this);
     }
 
     @Override
     public void onStopListening() {
         super.onStopListening();
-        mPrefs.unregisterOnSharedPreferenceChangeListener(this);
-        mPrefs = null;
+        SysfsWatcher.getInstance().unsubscribe(ReadingModeSwitch.getFile(), this);
     }
 
     @Override
     public void onClick() {
         super.onClick();
-        mInternalStart = true;
         int state = ReadingModeSwitch.getState(this);
         if (++state > 2) state = 0;
         ReadingModeSwitch.setState(state, this);
         refreshState(state);
     }
 
-    private void refreshState() {
-        refreshState(ReadingModeSwitch.getState(this));
-    }
-
     private void refreshState(int state) {
         final Tile tile = getQsTile();
         setLabelByState(this, tile, state);
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pixelage.device.DeviceSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The device's own sysfs.
+ */
+public class RealSysfsBackend implements SysfsBackend {
+
+    @Override
+    public String resolve(String path) {
+        return path;
+    }
+
+    @Override
+    public FileChannel open(String path, boolean readable, boolean writable)
+            throws IOException {
+        if (readable && writable) {
+            return FileChannel.open(Paths.get(resolve(path)),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return FileChannel.open(Paths.get(resolve(path)),
+                writable ? StandardOpenOption.WRITE : StandardOpenOption.READ);
+    }
+
+    @Override
+    public boolean exists(String path) {
+        return new File(resolve(path)).exists();
+    }
+
+    @Override
+    public boolean canWrite(String path) {
+        return new File(resolve(path)).canWrite();
+    }
+
+    @Override
+    public boolean truncateAfterWrite() {
+        return false;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.app.NotificationManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.PrintWriter;
+
+/**
+ * Puts the ringer mode back on a target after an asynchronous zen mode change
+ * overwrote it.
+ *
+ * Once armed, nothing is checked until the zen mode change is broadcast.
+ * From then on the first ringer mode found off target is corrected once and
+ * the verifier disarms, so later changes made on purpose, e.g. with the
+ * volume keys, are left alone. It also disarms after {@link #TIMEOUT_MS},
+ * with a last check for a change that wasn't broadcast.
+ */
+final class RingerModeVerifier {
+
+    private static final String TAG = "RingerModeVerifier";
+
+    private static final long TIMEOUT_MS = 1000;
+
+    private final AudioManager mAudioManager;
+    private final Handler mHandler;
+
+    private boolean mArmed;
+    private boolean mZenApplied;
+    private int mTargetMode;
+    private long mArmedAt;
+
+    private long mArmCount;
+    private long mRaceCount;
+    private long mLateCount;
+    private final LatencyHistogram mRaceLatency = new LatencyHistogram();
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (NotificationManager.ACTION_INTERRUPTION_FILTER_CHANGED.equals(
+                    intent.getAction())) {
+                synchronized (RingerModeVerifier.this) {
+                    if (mArmed) mZenApplied = true;
+                }
+            }
+            verify(false);
+        }
+    };
+
+    private final Runnable mTimeout = () -> {
+        verify(true);
+        synchronized (this) {
+            mArmed = false;
+        }
+    };
+
+    /**
+     * @param handler   The handler changes are verified on
+     */
+    RingerModeVerifier(Context context, AudioManager audioManager, Handler handler) {
+        mAudioManager = audioManager;
+        mHandler = handler;
+        final IntentFilter filter = new IntentFilter(
+                AudioManager.INTERNAL_RINGER_MODE_CHANGED_ACTION);
+        filter.addAction(NotificationManager.ACTION_INTERRUPTION_FILTER_CHANGED);
+        context.registerReceiver(mReceiver, filter, null, handler);
+    }
+
+    /**
+     * Start keeping the ringer mode on the specified target.
+     */
+    synchronized void arm(int targetMode) {
+        mArmed = true;
+        mZenApplied = false;
+        mTargetMode = targetMode;
+        mArmedAt = SystemClock.elapsedRealtimeNanos();
+        mArmCount++;
+        mHandler.removeCallbacks(mTimeout);
+        mHandler.postDelayed(mTimeout, TIMEOUT_MS);
+    }
+
+    synchronized void cancel() {
+        mArmed = false;
+        mHandler.removeCallbacks(mTimeout);
+    }
+
+    synchronized void resetStats() {
+        mArmCount = 0;
+        mRaceCount = 0;
+        mLateCount = 0;
+        mRaceLatency.reset();
+    }
+
+    synchronized void dump(PrintWriter pw) {
+        pw.println("Ringer mode verification:");
+        pw.println("  armed=" + mArmCount + " races=" + mRaceCount
+                + " caught at timeout=" + mLateCount);
+        if (mRaceLatency.getCount() == 0) return;
+        pw.println(String.format("  race after (ms) p50=%.1f p99=%.1f max=%.1f",
+                mRaceLatency.getPercentile(50) / 1000000f,
+                mRaceLatency.getPercentile(99) / 1000000f,
+                mRaceLatency.getMax() / 1000000f));
+    }
+
+    private void verify(boolean timeout) {
+        final int target;
+        synchronized (this) {
+            // only the change made by the zen mode is corrected
+            if (!mArmed || !mZenApplied) return;
+            target = mTargetMode;
+        }
+        if (mAudioManager.getRingerModeInternal() == target) return;
+
+        final long latency;
+        synchronized (this) {
+            if (!mArmed) return;
+            mArmed = false;
+            latency = SystemClock.elapsedRealtimeNanos() - mArmedAt;
+            mRaceCount++;
+            if (timeout) mLateCount++;
+        }
+        mHandler.removeCallbacks(mTimeout);
+        mAudioManager.setRingerModeInternal(target);
+        mRaceLatency.record(latency);
+        Log.d(TAG, "Ringer mode overwritten " + latency / 1000000 + "ms after arming"
+                + (timeout ? ", caught at timeout" : ""));
+    }
+}
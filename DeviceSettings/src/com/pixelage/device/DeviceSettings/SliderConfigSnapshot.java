@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.UserHandle;
+import android.provider.Settings;
+
+/**
+ * Immutable copy of the settings the alert slider depends on, so handling a
+ * slider event doesn't query the settings provider.
+ */
+final class SliderConfigSnapshot {
+
+    // how long the slider has to rest in a position before it is applied,
+    // a Settings.Global key so changing it rebuilds the snapshot
+    private static final String SETTLE_MS_KEY = "device_settings_slider_settle_ms";
+    private static final int DEFAULT_SETTLE_MS = 100;
+
+    final int topMode;
+    final int middleMode;
+    final int bottomMode;
+    final boolean setupComplete;
+    final boolean muteMediaEnabled;
+    final boolean dialogEnabled;
+    final int settleMs;
+    final SliderTransitionTable transitions;
+
+    private SliderConfigSnapshot(Context context, SliderConfigSnapshot previous) {
+        final ContentResolver resolver = context.getContentResolver();
+        topMode = Constants.getPreferenceInt(context, Constants.NOTIF_SLIDER_TOP_KEY);
+        middleMode = Constants.getPreferenceInt(context, Constants.NOTIF_SLIDER_MIDDLE_KEY);
+        bottomMode = Constants.getPreferenceInt(context, Constants.NOTIF_SLIDER_BOTTOM_KEY);
+        setupComplete = Settings.Secure.getInt(resolver,
+                Settings.Secure.USER_SETUP_COMPLETE, 0) != 0;
+        muteMediaEnabled = Constants.getIsMuteMediaEnabled(context);
+        dialogEnabled = Constants.getIsSliderDialogEnabled(context);
+        settleMs = Settings.Global.getInt(resolver, SETTLE_MS_KEY, DEFAULT_SETTLE_MS);
+        if (previous != null && previous.muteMediaEnabled == muteMediaEnabled) {
+            transitions = previous.transitions;
+        } else {
+            transitions = new SliderTransitionTable(muteMediaEnabled);
+        }
+    }
+
+    /**
+     * @return the mode assigned to the slider position, or -1 if the scan
+     *         code isn't a slider position
+     */
+    int getMode(int scanCode) {
+        switch (scanCode) {
+            case Constants.POSITION_TOP:
+                return topMode;
+            case Constants.POSITION_MIDDLE:
+                return middleMode;
+            case Constants.POSITION_BOTTOM:
+                return bottomMode;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Keeps a snapshot current by observing the settings it was built from, and rebuilding it on change or user switch.
+     */
+    static final class Tracker {
+
+        private static final Uri[] URIS = {
+            Settings.System.getUriFor(Constants.NOTIF_SLIDER_TOP_PREF),
+            Settings.System.getUriFor(Constants.NOTIF_SLIDER_MIDDLE_PREF),
+            Settings.System.getUriFor(Constants.NOTIF_SLIDER_BOTTOM_PREF),
+            Settings.Secure.getUriFor(Settings.Secure.USER_SETUP_COMPLETE),
+            Settings.System.getUriFor(Constants.NOTIF_SLIDER_MUTE_MEDIA_KEY),
+            Settings.System.getUriFor(Constants.NOTIF_DIALOG_ENABLED_KEY),
+            Settings.Global.getUriFor(SETTLE_MS_KEY),
+        };
+
+        private final Context mContext;
+        private volatile SliderConfigSnapshot mSnapshot;
+
+        /**
+         * @param handler   The handler observers run on
+         */
+        Tracker(Context context, Handler handler) {
+            mContext = context;
+            final ContentObserver observer = new ContentObserver(handler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    reload();
+                }
+            };
+            final ContentResolver resolver = context.getContentResolver();
+            for (Uri uri : URIS) {
+                resolver.registerContentObserver(uri, false, observer, UserHandle.USER_ALL);
+            }
+            context.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    reload();
+                }
+            }, new IntentFilter(Intent.ACTION_USER_SWITCHED), null, handler);
+            reload();
+        }
+
+        SliderConfigSnapshot get() {
+            return mSnapshot;
+        }
+
+        private void reload() {
+            mSnapshot = new SliderConfigSnapshot(mContext, mSnapshot);
+        }
+    }
+}
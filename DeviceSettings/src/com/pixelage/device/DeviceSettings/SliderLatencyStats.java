@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+
+/**
+ * Time from a slider key event to each stage of applying it.
+ *
+ * Every stage keeps a histogram over all events, and the stages of the last
+ * {@link #RING_SIZE} events are kept as is.
+ */
+final class SliderLatencyStats {
+
+    static final int STAGE_ENTRY = 0;
+    static final int STAGE_APPLY = 1;
+    static final int STAGE_ZEN = 2;
+    static final int STAGE_RINGER = 3;
+    static final int STAGE_PUBLISH = 4;
+    private static final int STAGE_COUNT = 5;
+
+    private static final String[] STAGE_NAMES = {
+        "entry", "apply", "zen", "ringer", "publish",
+    };
+
+    private static final int RING_SIZE = 32;
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[STAGE_COUNT];
+    private final long[] mEventTimes = new long[RING_SIZE];
+    private final long[] mSequences = new long[RING_SIZE];
+    private final long[][] mLatencies = new long[RING_SIZE][STAGE_COUNT];
+    private long mNextSequence = 1;
+
+    SliderLatencyStats() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Start tracking an event and record its entry stage.
+     * @param eventTimeNanos    When the key event happened, in the
+     *                          {@link SystemClock#uptimeNanos()} base
+     * @return the sample to pass to {@link #mark(long, int)}
+     */
+    synchronized long begin(long eventTimeNanos) {
+        final long sequence = mNextSequence++;
+        final int slot = (int) (sequence % RING_SIZE);
+        mSequences[slot] = sequence;
+        mEventTimes[slot] = eventTimeNanos;
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mLatencies[slot][i] = -1;
+        }
+        mark(sequence, STAGE_ENTRY);
+        return sequence;
+    }
+
+    /**
+     * Record that the event reached the specified stage now.
+     */
+    synchronized void mark(long sample, int stage) {
+        final int slot = (int) (sample % RING_SIZE);
+        if (mSequences[slot] != sample) return; // overwritten already
+        final long latency = SystemClock.uptimeNanos() - mEventTimes[slot];
+        mLatencies[slot][stage] = latency;
+        mHistograms[stage].record(latency);
+    }
+
+    synchronized void reset() {
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < RING_SIZE; i++) {
+            mSequences[i] = 0;
+        }
+    }
+
+    synchronized void dump(PrintWriter pw) {
+        pw.println("Slider latency since key event (ms):");
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            final LatencyHistogram histogram = mHistograms[i];
+            if (histogram.getCount() == 0) continue;
+            pw.println(String.format("  %-9s count=%d p50=%.2f p99=%.2f max=%.2f",
+                    STAGE_NAMES[i], histogram.getCount(),
+                    histogram.getPercentile(50) / 1000000f,
+                    histogram.getPercentile(99) / 1000000f,
+                    histogram.getMax() / 1000000f));
+        }
+        pw.println("  last events:");
+        for (long sequence = Math.max(1, mNextSequence - RING_SIZE);
+                sequence < mNextSequence; sequence++) {
+            final int slot = (int) (sequence % RING_SIZE);
+            if (mSequences[slot] != sequence) continue;
+            final StringBuilder sb = new StringBuilder("    #").append(sequence);
+            for (int i = 0; i < STAGE_COUNT; i++) {
+                final long latency = mLatencies[slot][i];
+                if (latency < 0) continue;
+                sb.append(' ').append(STAGE_NAMES[i]).append('=')
+                        .append(String.format("%.2f", latency / 1000000f));
+            }
+            pw.println(sb);
+        }
+    }
+}
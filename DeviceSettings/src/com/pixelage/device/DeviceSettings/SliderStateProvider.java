@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.Manifest;
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Holds the current alert slider state.
+ *
+ * The key handler publishes every applied position with {@link #METHOD_SET}.
+ * Consumers observe {@link #CONTENT_URI} and read the state with
+ * {@link #METHOD_GET}, which also gives late subscribers the current state.
+ * The last state is kept in device protected storage so it survives this
+ * process being killed, restored without {@link #KEY_SHOW_DIALOG}. The bundle
+ * is empty until the slider has been moved once.
+ */
+public class SliderStateProvider extends ContentProvider {
+
+    public static final String AUTHORITY = "com.pixelage.device.DeviceSettings.sliderstate";
+    public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY);
+
+    public static final String METHOD_GET = "get";
+    public static final String METHOD_SET = "set";
+
+    public static final String KEY_POSITION = "position";
+    public static final String KEY_MODE = "mode";
+    // whether the change should show the slider dialog
+    public static final String KEY_SHOW_DIALOG = "show_dialog";
+    // increases with every published state
+    public static final String KEY_SEQUENCE = "sequence";
+
+    private static final String PREF_FILE_NAME = "slider_state";
+
+    private final Object mLock = new Object();
+    private SharedPreferences mPrefs;
+    private Bundle mState = Bundle.EMPTY;
+    private long mSequence;
+
+    @Override
+    public boolean onCreate() {
+        // keeps growing across restarts of this process, which consumers
+        // tell states apart with
+        mSequence = SystemClock.elapsedRealtimeNanos();
+        mPrefs = getContext().createDeviceProtectedStorageContext()
+                .getSharedPreferences(PREF_FILE_NAME, Context.MODE_PRIVATE);
+        if (mPrefs.contains(KEY_POSITION)) {
+            final Bundle state = new Bundle();
+            state.putInt(KEY_POSITION, mPrefs.getInt(KEY_POSITION, 0));
+            state.putInt(KEY_MODE, mPrefs.getInt(KEY_MODE, 0));
+            state.putBoolean(KEY_SHOW_DIALOG, false);
+            state.putLong(KEY_SEQUENCE, mSequence);
+            mState = state;
+        }
+        return true;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        switch (method) {
+            case METHOD_GET:
+                getContext().enforceCallingOrSelfPermission(
+                        Manifest.permission.STATUS_BAR_SERVICE, "Reading slider state");
+                synchronized (mLock) {
+                    return new Bundle(mState);
+                }
+            case METHOD_SET:
+                if (Binder.getCallingUid() != Process.SYSTEM_UID) {
+                    throw new SecurityException("Only the system can publish slider state");
+                }
+                synchronized (mLock) {
+                    final Bundle state = new Bundle(extras);
+                    state.putLong(KEY_SEQUENCE, ++mSequence);
+                    mState = state;
+                    mPrefs.edit()
+                            .putInt(KEY_POSITION, state.getInt(KEY_POSITION))
+                            .putInt(KEY_MODE, state.getInt(KEY_MODE))
+                            .apply();
+                }
+                getContext().getContentResolver().notifyChange(CONTENT_URI, null);
+                return null;
+            default:
+                return super.call(method, arg, extras);
+        }
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection,
+            String[] selectionArgs) {
+        return 0;
+    }
+}
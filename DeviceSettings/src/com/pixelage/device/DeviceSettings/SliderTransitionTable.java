@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import android.media.AudioManager;
+import android.os.VibrationEffect;
+import android.provider.Settings;
+
+/**
+ * What to do, and in which order, when the slider moves from one mode to
+ * another. Built for a given slider configuration so that handling an event
+ * is a single lookup.
+ */
+final class SliderTransitionTable {
+
+    static final int MODE_COUNT = Constants.KEY_VALUE_NORMAL + 1;
+
+    // Operations, executed in the order they appear in a transition
+    static final byte OP_HAPTIC = 0;
+    static final byte OP_RINGER = 1;
+    static final byte OP_ZEN = 2;
+    // keep the ringer mode while the asynchronous zen change lands
+    static final byte OP_VERIFY_RINGER = 3;
+    // save the media volume and mute it
+    static final byte OP_MUTE_MEDIA = 4;
+    // restore the saved media volume if it is still muted
+    static final byte OP_UNMUTE_MEDIA = 5;
+    // publish the new state to SliderStateProvider
+    static final byte OP_PUBLISH = 6;
+
+    private static final int[] ZEN_MODES = new int[MODE_COUNT];
+    private static final int[] RINGER_MODES = new int[MODE_COUNT];
+    private static final int[] HAPTICS = new int[MODE_COUNT];
+    static {
+        ZEN_MODES[Constants.KEY_VALUE_TOTAL_SILENCE] = Settings.Global.ZEN_MODE_NO_INTERRUPTIONS;
+        ZEN_MODES[Constants.KEY_VALUE_SILENT] = Settings.Global.ZEN_MODE_OFF;
+        ZEN_MODES[Constants.KEY_VALUE_PRIORTY_ONLY] = Settings.Global.ZEN_MODE_IMPORTANT_INTERRUPTIONS;
+        ZEN_MODES[Constants.KEY_VALUE_VIBRATE] = Settings.Global.ZEN_MODE_OFF;
+        ZEN_MODES[Constants.KEY_VALUE_NORMAL] = Settings.Global.ZEN_MODE_OFF;
+
+        RINGER_MODES[Constants.KEY_VALUE_TOTAL_SILENCE] = AudioManager.RINGER_MODE_NORMAL;
+        RINGER_MODES[Constants.KEY_VALUE_SILENT] = AudioManager.RINGER_MODE_SILENT;
+        RINGER_MODES[Constants.KEY_VALUE_PRIORTY_ONLY] = AudioManager.RINGER_MODE_NORMAL;
+        RINGER_MODES[Constants.KEY_VALUE_VIBRATE] = AudioManager.RINGER_MODE_VIBRATE;
+        RINGER_MODES[Constants.KEY_VALUE_NORMAL] = AudioManager.RINGER_MODE_NORMAL;
+
+        HAPTICS[Constants.KEY_VALUE_TOTAL_SILENCE] = VibrationEffect.EFFECT_THUD;
+        HAPTICS[Constants.KEY_VALUE_SILENT] = VibrationEffect.EFFECT_DOUBLE_CLICK;
+        HAPTICS[Constants.KEY_VALUE_PRIORTY_ONLY] = VibrationEffect.EFFECT_POP;
+        HAPTICS[Constants.KEY_VALUE_VIBRATE] = VibrationEffect.EFFECT_HEAVY_CLICK;
+        HAPTICS[Constants.KEY_VALUE_NORMAL] = -1;
+    }
+
+    static final class Transition {
+        final int zenMode;
+        final int ringerMode;
+        final int haptic;
+        final byte[] ops;
+
+        Transition(int mode, byte[] ops) {
+            zenMode = ZEN_MODES[mode];
+            ringerMode = RINGER_MODES[mode];
+            haptic = HAPTICS[mode];
+            this.ops = ops;
+        }
+    }
+
+    private final Transition[] mTransitions = new Transition[MODE_COUNT * MODE_COUNT];
+
+    SliderTransitionTable(boolean muteMedia) {
+        final byte[] ops = new byte[8];
+        for (int prev = 0; prev < MODE_COUNT; prev++) {
+            for (int next = 0; next < MODE_COUNT; next++) {
+                int count = 0;
+                if (prev == Constants.KEY_VALUE_TOTAL_SILENCE && next != prev) {
+                    // total silence has to be left before setting the ringer mode,
+                    // as it sets it internally, and the haptic only fires after
+                    ops[count++] = OP_ZEN;
+                    ops[count++] = OP_RINGER;
+                    ops[count++] = OP_HAPTIC;
+                    ops[count++] = OP_VERIFY_RINGER;
+                } else {
+                    // vibrate before anything else, and set the ringer mode
+                    // first as setting the zen mode could change it
+                    ops[count++] = OP_HAPTIC;
+                    ops[count++] = OP_RINGER;
+                    ops[count++] = OP_ZEN;
+                }
+                if (muteMedia) {
+                    if (next == Constants.KEY_VALUE_SILENT) {
+                        ops[count++] = OP_MUTE_MEDIA;
+                    } else if (prev == Constants.KEY_VALUE_SILENT) {
+                        ops[count++] = OP_UNMUTE_MEDIA;
+                    }
+                }
+                ops[count++] = OP_PUBLISH;
+                final byte[] cell = new byte[count];
+                System.arraycopy(ops, 0, cell, 0, count);
+                mTransitions[prev * MODE_COUNT + next] = new Transition(next, cell);
+            }
+        }
+    }
+
+    /**
+     * @return the transition, or null if either mode is unknown
+     */
+    Transition get(int prev, int next) {
+        if (prev < 0 || prev >= MODE_COUNT || next < 0 || next >= MODE_COUNT) {
+            return null;
+        }
+        return mTransitions[prev * MODE_COUNT + next];
+    }
+}
@@ -31,80 +31,135 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.provider.Settings;
+import android.util.Log;
 import androidx.preference.PreferenceManager;
 
 import com.pixelage.device.DeviceSettings.ModeSwitch.*;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Startup extends BroadcastReceiver {
 
-    private static final String KEY_MIGRATION_DONE = "migration_done_2";
+    private static final String TAG = "DeviceSettings.Startup";
+
+    static final String KEY_MIGRATION_DONE = "migration_done_2";
     private static final String PKG_NAME = "com.pixelage.device.DeviceSettings";
     private static final String READING_TILE_CLASS_NAME = PKG_NAME + ".ReadingModeTileService";
     private static final String REFRESH_TILE_CLASS_NAME = PKG_NAME + ".RefreshRateTileService";
 
     private static final Map<String, String> sKeyFileMap = Map.of(
         // DC Dimming
-        KEY_DC_SWITCH, DCModeSwitch.getFile()
+        KEY_DC_SWITCH, DCModeSwitch.FILE
     );
 
-    private void restore(String file, boolean enabled) {
-        if (file == null) return;
-        if (enabled) Utils.writeValue(file, "1");
+    private static final ExecutorService sExecutor = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "DeviceSettings.Startup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static boolean restore(String file, boolean enabled) {
+        if (!enabled) return true;
+        if (!CapabilityRegistry.getInstance().isWritable(file)) return false;
+        return Utils.writeValue(file, "1", true);
     }
 
     @Override
     public void onReceive(final Context context, final Intent intent) {
-        final SharedPreferences dePrefs = Constants.getDESharedPrefs(context);
+        final PendingResult result = goAsync();
+        final String action = intent.getAction();
+        final long start = SystemClock.elapsedRealtime();
+        final int cookie = (int) start;
+        Trace.beginAsyncSection(TAG, cookie);
+        sExecutor.execute(() -> {
+            try {
+                onBoot(context, action);
+            } finally {
+                Trace.endAsyncSection(TAG, cookie);
+                Log.i(TAG, action + " handled in "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+                result.finish();
+            }
+        });
+    }
 
-        if (intent.getAction().equals(ACTION_BOOT_COMPLETED)) {
-            if (!dePrefs.getBoolean(KEY_MIGRATION_DONE, false)) {
+    private static void onBoot(Context context, String action) {
+        Trace.beginSection("DeviceSettings.load");
+        // probes the hardware nodes once per build, and the ones still
+        // missing again once the boot completed
+        CapabilityRegistry.getInstance().load(context);
+        if (action.equals(ACTION_BOOT_COMPLETED)) {
+            CapabilityRegistry.getInstance().refresh(context);
+        }
+        final DeviceStateRepository state = DeviceStateRepository.getInstance(context);
+        Trace.endSection();
+
+        if (action.equals(ACTION_BOOT_COMPLETED)) {
+            if (!state.getBoolean(KEY_MIGRATION_DONE, false)) {
                 // migration of old user encrypted preferences
                 final SharedPreferences oldPrefs = PreferenceManager.getDefaultSharedPreferences(context);
                 final SharedPreferences.Editor oldPrefsEditor = oldPrefs.edit();
-                final SharedPreferences.Editor dePrefsEditor = dePrefs.edit();
 
                 for (String prefKey : sKeyFileMap.keySet()) {
                     if (!oldPrefs.contains(prefKey)) continue;
-                    dePrefsEditor.putBoolean(prefKey, oldPrefs.getBoolean(prefKey, false));
+                    state.putBoolean(prefKey, oldPrefs.getBoolean(prefKey, false));
                     oldPrefsEditor.remove(prefKey);
                 }
 
-                dePrefsEditor.putBoolean(KEY_MIGRATION_DONE, true);
-                // must use commit (and not apply) because of what follows!
-                dePrefsEditor.commit();
+                state.putBoolean(KEY_MIGRATION_DONE, true);
+                // the new values must be on disk before the old ones are dropped
+                state.flush();
                 oldPrefsEditor.commit();
             }
+        }
 
+        // restoring state, one node per thread
+        Trace.beginSection("DeviceSettings.restore");
+        final List<CompletableFuture<Void>> restores = new ArrayList<>(sKeyFileMap.size());
+        for (Map.Entry<String, String> set : sKeyFileMap.entrySet()) {
+            final String file = set.getValue();
+            final boolean enabled = state.getBoolean(set.getKey(), false);
+            restores.add(CompletableFuture.runAsync(() -> {
+                if (!restore(file, enabled)) {
+                    Log.w(TAG, "Failed to restore " + file);
+                }
+            }, sExecutor));
+        }
+
+        if (action.equals(ACTION_BOOT_COMPLETED)) {
             // disable unavailable tiles
             PackageManager pm = context.getPackageManager();
             ComponentName cn = new ComponentName(PKG_NAME, READING_TILE_CLASS_NAME);
-            int state = ReadingModeSwitch.isSupported(context)
+            int tileState = ReadingModeSwitch.isSupported(context)
                     ? COMPONENT_ENABLED_STATE_ENABLED : COMPONENT_ENABLED_STATE_DISABLED;
-            pm.setComponentEnabledSetting(cn, state, 0);
+            pm.setComponentEnabledSetting(cn, tileState, 0);
             cn = new ComponentName(PKG_NAME, REFRESH_TILE_CLASS_NAME);
-            state = context.getResources().getBoolean(R.bool.config_deviceHasHighRefreshRate)
+            tileState = context.getResources().getBoolean(R.bool.config_deviceHasHighRefreshRate)
                     ? COMPONENT_ENABLED_STATE_ENABLED : COMPONENT_ENABLED_STATE_DISABLED;
-            pm.setComponentEnabledSetting(cn, state, 0);
-        }
+            pm.setComponentEnabledSetting(cn, tileState, 0);
 
-        // restoring state from DE shared preferences
-        for (Map.Entry<String, String> set : sKeyFileMap.entrySet()) {
-            final String prefKey = set.getKey();
-            final String file = set.getValue();
-            restore(file, dePrefs.getBoolean(prefKey, false));
+            // keeps the statistics of this process reachable through dumpsys
+            context.startService(new Intent(context, HardwareStatsService.class));
         }
 
-        // reset prefs that reflect a state that does not retain a reboot
-        Map<String,?> keys = dePrefs.getAll();
-        for (Map.Entry<String,?> entry : keys.entrySet()) {
-            final String key = entry.getKey();
-            if (sKeyFileMap.containsKey(key)) continue;
-            if (KEY_MIGRATION_DONE.equals(key)) continue;
-            dePrefs.edit().remove(key).commit();
-        }
+        // reset prefs that reflect a state that does not retain a reboot,
+        // all of them in a single write
+        final Set<String> keep = new HashSet<>(sKeyFileMap.keySet());
+        keep.add(KEY_MIGRATION_DONE);
+        state.retainKeys(keep);
+        state.flush();
+
+        CompletableFuture.allOf(restores.toArray(new CompletableFuture[0])).join();
+        Trace.endSection();
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pixelage.device.DeviceSettings;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Where sysfs nodes are looked up. The node paths used throughout DeviceSettings
+ * are the on-device ones; a backend decides what file they map to.
+ */
+public interface SysfsBackend {
+
+    /**
+     * System property naming a directory to use as sysfs root instead of "/",
+     * e.g. a tmpfs tree when running the I/O layer on a host.
+     */
+    String PROPERTY_ROOT = "devicesettings.sysfs.root";
+
+    /**
+     * @return the file the node path maps to
+     */
+    String resolve(String path);
+
+    /**
+     * Opens the node with at least one of read and write access.
+     */
+    FileChannel open(String path, boolean readable, boolean writable) throws IOException;
+
+    boolean exists(String path);
+
+    boolean canWrite(String path);
+
+    /**
+     * Whether a write has to truncate the file after it. Sysfs attributes are
+     * replaced as a whole on every write, regular files are not.
+     */
+    boolean truncateAfterWrite();
+
+    /**
+     * @return the backend selected by {@link #PROPERTY_ROOT}
+     */
+    static SysfsBackend fromSystemProperty() {
+        final String root = System.getProperty(PROPERTY_ROOT);
+        if (root == null || root.isEmpty()) {
+            return new RealSysfsBackend();
+        }
+        return new DirectorySysfsBackend(root);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sysfs node access behind {@link Utils}: pooled handles, the value cache,
+ * the background write queue and redundant write suppression.
+ *
+ * Plain Java on purpose, so the I/O layer can also run on a host against a
+ * {@link DirectorySysfsBackend}, as the benchmarks in DeviceSettings/benchmark do.
+ */
+public final class SysfsIo {
+
+    private static final SysfsValueCache sValueCache = new SysfsValueCache();
+
+    private static final AtomicLong sWritesCommitted = new AtomicLong();
+    private static final AtomicLong sWritesSkipped = new AtomicLong();
+
+    /**
+     * Write a string value to the specified file.
+     * @param filename      The filename
+     * @param value         The value
+     */
+    public static void writeValue(String filename, String value) {
+        writeValue(filename, value, false);
+    }
+
+    /**
+     * Write a string value to the specified file.
+     * @param filename      The filename
+     * @param value         The value
+     * @param skipUnchanged Skip the write if the file already holds value. The
+     *                      node is read right before, never the cache, since
+     *                      the driver or another writer may have changed it
+     * @return              Whether the file holds the value afterwards
+     */
+    public static boolean writeValue(String filename, String value, boolean skipUnchanged) {
+        if (filename == null) {
+            return false;
+        }
+        if (skipUnchanged && value.equals(readNode(filename))) {
+            sWritesSkipped.incrementAndGet();
+            sValueCache.put(filename, value);
+            return true;
+        }
+        try {
+            SysfsNodePool.getInstance().write(filename, value);
+            sWritesCommitted.incrementAndGet();
+            sValueCache.put(filename, value);
+            return true;
+        } catch (IOException e) {
+            sValueCache.invalidate(filename);
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Write a string value to the specified file on the background write queue.
+     * Reads of the file return the queued value until it has been written.
+     * @param filename      The filename
+     * @param value         The value
+     * @param skipUnchanged See {@link #writeValue(String, String, boolean)}
+     * @return              A future completed once the write went through
+     */
+    public static CompletableFuture<Boolean> writeValueAsync(String filename, String value,
+            boolean skipUnchanged) {
+        return HardwareWriteQueue.getInstance().enqueue(filename, value, skipUnchanged);
+    }
+
+    /**
+     * Enable caching of reads from the specified file.
+     * Writes through {@link #writeValue} keep the cached value up to date.
+     * @param filename      The filename
+     * @param ttlMs         How long a read value stays valid, 0 to disable caching
+     */
+    public static void setCacheTtl(String filename, long ttlMs) {
+        if (filename == null) {
+            return;
+        }
+        sValueCache.setTtl(filename, ttlMs);
+    }
+
+    /**
+     * Drop the cached value of the specified file so the next read hits the node.
+     * @param filename      The filename
+     */
+    public static void invalidateCache(String filename) {
+        if (filename == null) {
+            return;
+        }
+        sValueCache.invalidate(filename);
+    }
+
+    public static void invalidateCache() {
+        sValueCache.invalidateAll();
+    }
+
+    /**
+     * @return the number of writes that reached a node
+     */
+    public static long getWritesCommitted() {
+        return sWritesCommitted.get();
+    }
+
+    /**
+     * @return the number of writes skipped because the node already held the value
+     */
+    public static long getWritesSkipped() {
+        return sWritesSkipped.get();
+    }
+
+    /**
+     * Check if the specified file exists.
+     * @param filename      The filename
+     * @return              Whether the file exists or not
+     */
+    public static boolean fileExists(String filename) {
+        if (filename == null) {
+            return false;
+        }
+        return SysfsNodePool.getInstance().getBackend().exists(filename);
+    }
+
+    public static boolean fileWritable(String filename) {
+        return fileExists(filename)
+                && SysfsNodePool.getInstance().getBackend().canWrite(filename);
+    }
+
+    public static String readLine(String filename) {
+        if (filename == null) {
+            return null;
+        }
+        String line = HardwareWriteQueue.getInstance().getPendingValue(filename);
+        if (line != null) {
+            return line;
+        }
+        line = sValueCache.get(filename);
+        if (line != null) {
+            return line;
+        }
+        try {
+            line = SysfsNodePool.getInstance().readLine(filename);
+        } catch (IOException e) {
+            return null;
+        }
+        sValueCache.put(filename, line);
+        return line;
+    }
+
+    /**
+     * Read the specified file as a boolean, anything but "0" being true.
+     * Allocates nothing unless the value has to be cached.
+     * @param filename      The filename
+     * @param defValue      The value returned if the file can't be read
+     */
+    public static boolean readBoolean(String filename, boolean defValue) {
+        if (filename == null) {
+            return defValue;
+        }
+        if (hasStringValue(filename)) {
+            final String fileValue = readLine(filename);
+            return fileValue != null ? !fileValue.trim().equals("0") : defValue;
+        }
+        try {
+            return SysfsNodePool.getInstance().readBoolean(filename, defValue);
+        } catch (IOException e) {
+            return defValue;
+        }
+    }
+
+    /**
+     * Read the specified file as an integer.
+     * Allocates nothing unless the value has to be cached.
+     * @param filename      The filename
+     * @param defValue      The value returned if the file can't be read or parsed
+     */
+    public static int readInt(String filename, int defValue) {
+        if (filename == null) {
+            return defValue;
+        }
+        if (hasStringValue(filename)) {
+            final String fileValue = readLine(filename);
+            if (fileValue == null) {
+                return defValue;
+            }
+            try {
+                return Integer.parseInt(fileValue.trim());
+            } catch (NumberFormatException e) {
+                return defValue;
+            }
+        }
+        try {
+            return (int) SysfsNodePool.getInstance().readFixedPoint(filename, 0, defValue);
+        } catch (IOException e) {
+            return defValue;
+        }
+    }
+
+    /**
+     * Read the first number in the specified file as a fixed point value, e.g.
+     * "fps: 60.1" read with one fraction digit gives 601. Always reads the file,
+     * bypassing the value cache, and allocates nothing.
+     * @param filename      The filename
+     * @param fractionDigits Number of fraction digits to keep
+     * @param defValue      The value returned if the file can't be read or parsed
+     */
+    public static long readFixedPoint(String filename, int fractionDigits, long defValue) {
+        if (filename == null) {
+            return defValue;
+        }
+        try {
+            return SysfsNodePool.getInstance().readFixedPoint(filename, fractionDigits, defValue);
+        } catch (IOException e) {
+            return defValue;
+        }
+    }
+
+    /**
+     * @return the first line of the node with surrounding whitespace removed,
+     *         bypassing the write queue and the value cache, or null if it
+     *         can't be read
+     */
+    private static String readNode(String filename) {
+        try {
+            final String line = SysfsNodePool.getInstance().readLine(filename);
+            return line != null ? line.trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether reads of the file are served as strings, from the write queue
+     * or the value cache, rather than parsed from the node.
+     */
+    private static boolean hasStringValue(String filename) {
+        return sValueCache.isCached(filename)
+                || HardwareWriteQueue.getInstance().getPendingValue(filename) != null;
+    }
+
+    private SysfsIo() {
+        // This class is not supposed to be instantiated
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one open {@link FileChannel} per sysfs node so that repeated reads and
+ * writes don't pay for open/close and reader allocation every time.
+ * All I/O is positional at offset 0, which makes sysfs regenerate the
+ * attribute on every read.
+ *
+ * Nodes can be pinned with {@link #acquire(String)} while a caller polls them;
+ * unpinned nodes are closed once they have been idle for {@link #IDLE_TIMEOUT_MS}.
+ */
+public final class SysfsNodePool {
+
+    private static final long IDLE_TIMEOUT_MS = 30000;
+    private static final int BUFFER_SIZE = 1024;
+
+    private static final SysfsNodePool sInstance = new SysfsNodePool();
+
+    private final Map<String, Node> mNodes = new HashMap<>();
+    private volatile SysfsBackend mBackend = SysfsBackend.fromSystemProperty();
+    private final ScheduledExecutorService mReaper =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread t = new Thread(r, "SysfsNodePool");
+                t.setDaemon(true);
+                return t;
+            });
+    private boolean mReapScheduled;
+
+    private static final class Node {
+        final String path;
+        final FileChannel channel;
+        final boolean readable;
+        final boolean writable;
+        final boolean truncate;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final SysfsStats.Node stats;
+        int refs;
+        long lastUsed;
+        boolean closed;
+
+        Node(String path, FileChannel channel, boolean readable, boolean writable,
+                boolean truncate) {
+            this.path = path;
+            this.channel = channel;
+            this.readable = readable;
+            this.writable = writable;
+            this.truncate = truncate;
+            this.stats = SysfsStats.getInstance().forNode(path);
+        }
+    }
+
+    private SysfsNodePool() { }
+
+    public static SysfsNodePool getInstance() {
+        return sInstance;
+    }
+
+    public SysfsBackend getBackend() {
+        return mBackend;
+    }
+
+    /**
+     * Switch to another backend. Open nodes are closed.
+     */
+    public void setBackend(SysfsBackend backend) {
+        synchronized (mNodes) {
+            mBackend = backend;
+            closeAllLocked();
+        }
+    }
+
+    /**
+     * Opens the node if needed and keeps it open until the matching
+     * {@link #release(String)}.
+     */
+    public void acquire(String path) throws IOException {
+        synchronized (mNodes) {
+            obtainLocked(path, false).refs++;
+        }
+    }
+
+    public void release(String path) {
+        synchronized (mNodes) {
+            final Node node = mNodes.get(path);
+            if (node == null || node.refs == 0) return;
+            node.refs--;
+            node.lastUsed = System.nanoTime();
+            scheduleReapLocked();
+        }
+    }
+
+    /**
+     * Reads the first line of the node, without the line terminator.
+     * @return the line, or null if the node is empty
+     */
+    public String readLine(String path) throws IOException {
+        while (true) {
+            final Node node = obtain(path, false);
+            synchronized (node) {
+                if (node.closed) continue;
+                final int len = fill(node);
+                if (len == 0) return null;
+                final ByteBuffer buf = node.buffer;
+                int end = 0;
+                while (end < len && buf.get(end) != '\n') end++;
+                final byte[] bytes = new byte[end];
+                buf.get(bytes, 0, end);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Parses the first number in the node as a fixed point value scaled by
+     * 10^fractionDigits, e.g. "fps: 60.1" read with one digit gives 601.
+     * Extra fraction digits are truncated. Does not allocate.
+     * @return the value, or defValue if the node holds no number
+     */
+    public long readFixedPoint(String path, int fractionDigits, long defValue)
+            throws IOException {
+        while (true) {
+            final Node node = obtain(path, false);
+            synchronized (node) {
+                if (node.closed) continue;
+                final int len = fill(node);
+                final ByteBuffer buf = node.buffer;
+                int i = 0;
+                while (i < len && !isDigit(buf.get(i))) i++;
+                if (i == len) return defValue;
+                final boolean negative = i > 0 && buf.get(i - 1) == '-';
+                long value = 0;
+                while (i < len && isDigit(buf.get(i))) {
+                    value = value * 10 + (buf.get(i++) - '0');
+                }
+                int digits = 0;
+                if (i < len && buf.get(i) == '.') {
+                    i++;
+                    while (digits < fractionDigits && i < len && isDigit(buf.get(i))) {
+                        value = value * 10 + (buf.get(i++) - '0');
+                        digits++;
+                    }
+                }
+                for (; digits < fractionDigits; digits++) {
+                    value *= 10;
+                }
+                return negative ? -value : value;
+            }
+        }
+    }
+
+    /**
+     * Reads the first line of the node as a boolean, ignoring surrounding
+     * whitespace: anything but "0" is true. Does not allocate.
+     * @return the value, or defValue if the node is empty
+     */
+    public boolean readBoolean(String path, boolean defValue) throws IOException {
+        while (true) {
+            final Node node = obtain(path, false);
+            synchronized (node) {
+                if (node.closed) continue;
+                final int len = fill(node);
+                if (len == 0) return defValue;
+                final ByteBuffer buf = node.buffer;
+                int end = 0;
+                while (end < len && buf.get(end) != '\n') end++;
+                int start = 0;
+                while (start < end && isWhitespace(buf.get(start))) start++;
+                while (end > start && isWhitespace(buf.get(end - 1))) end--;
+                return end - start != 1 || buf.get(start) != '0';
+            }
+        }
+    }
+
+    public void write(String path, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        while (true) {
+            final Node node = obtain(path, true);
+            synchronized (node) {
+                if (node.closed) continue;
+                final long start = System.nanoTime();
+                try {
+                    final ByteBuffer src = ByteBuffer.wrap(bytes);
+                    while (src.hasRemaining()) {
+                        node.channel.write(src, src.position());
+                    }
+                    if (node.truncate) {
+                        node.channel.truncate(bytes.length);
+                    }
+                } catch (IOException e) {
+                    node.stats.errors.incrementAndGet();
+                    throw e;
+                }
+                node.stats.writes.record(System.nanoTime() - start);
+                return;
+            }
+        }
+    }
+
+    /** Closes every node, including pinned ones. */
+    public void closeAll() {
+        synchronized (mNodes) {
+            closeAllLocked();
+        }
+    }
+
+    private void closeAllLocked() {
+        for (Node node : mNodes.values()) {
+            close(node);
+        }
+        mNodes.clear();
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static int fill(Node node) throws IOException {
+        final ByteBuffer buf = node.buffer;
+        final long start = System.nanoTime();
+        buf.clear();
+        try {
+            while (buf.hasRemaining()) {
+                if (node.channel.read(buf, buf.position()) <= 0) break;
+            }
+        } catch (IOException e) {
+            node.stats.errors.incrementAndGet();
+            throw e;
+        }
+        node.stats.reads.record(System.nanoTime() - start);
+        final int len = buf.position();
+        buf.flip();
+        return len;
+    }
+
+    private Node obtain(String path, boolean write) throws IOException {
+        synchronized (mNodes) {
+            final Node node = obtainLocked(path, write);
+            node.lastUsed = System.nanoTime();
+            if (node.refs == 0) scheduleReapLocked();
+            return node;
+        }
+    }
+
+    private Node obtainLocked(String path, boolean write) throws IOException {
+        final Node node = mNodes.get(path);
+        if (node != null && (write ? node.writable : node.readable)) {
+            return node;
+        }
+        // a node opened for the other kind of access only is replaced,
+        // keeping the old one if the new access isn't allowed
+        final Node opened = open(mBackend, path, write);
+        if (node != null) {
+            opened.refs = node.refs;
+            close(node);
+        }
+        mNodes.put(path, opened);
+        return opened;
+    }
+
+    /**
+     * Opens the node for reading and writing if allowed, otherwise with just
+     * the requested access, like write-only attributes or SELinux policies
+     * that only allow one of them.
+     */
+    private static Node open(SysfsBackend backend, String path, boolean write)
+            throws IOException {
+        final boolean truncate = backend.truncateAfterWrite();
+        final long start = System.nanoTime();
+        Node node;
+        try {
+            try {
+                node = new Node(path, backend.open(path, true, true), true, true, truncate);
+            } catch (IOException e) {
+                node = new Node(path, backend.open(path, !write, write), !write, write,
+                        truncate);
+            }
+        } catch (IOException e) {
+            SysfsStats.getInstance().forNode(path).errors.incrementAndGet();
+            throw e;
+        }
+        node.stats.opens.record(System.nanoTime() - start);
+        return node;
+    }
+
+    private void scheduleReapLocked() {
+        if (mReapScheduled) return;
+        mReapScheduled = true;
+        mReaper.schedule(this::reap, IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void reap() {
+        synchronized (mNodes) {
+            mReapScheduled = false;
+            final long now = System.nanoTime();
+            boolean pending = false;
+            final Iterator<Node> it = mNodes.values().iterator();
+            while (it.hasNext()) {
+                final Node node = it.next();
+                if (node.refs > 0) continue;
+                if (now - node.lastUsed >= TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MS)) {
+                    close(node);
+                    it.remove();
+                } else {
+                    pending = true;
+                }
+            }
+            if (pending) scheduleReapLocked();
+        }
+    }
+
+    private static void close(Node node) {
+        synchronized (node) {
+            node.closed = true;
+            try {
+                node.channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
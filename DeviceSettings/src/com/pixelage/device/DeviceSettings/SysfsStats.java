@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pixelage.device.DeviceSettings;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-node latency of sysfs opens, reads and writes, and their error counts.
+ */
+public final class SysfsStats {
+
+    private static final SysfsStats sInstance = new SysfsStats();
+
+    public static final class Node {
+        public final LatencyHistogram opens = new LatencyHistogram();
+        public final LatencyHistogram reads = new LatencyHistogram();
+        public final LatencyHistogram writes = new LatencyHistogram();
+        public final AtomicLong errors = new AtomicLong();
+
+        void reset() {
+            opens.reset();
+            reads.reset();
+            writes.reset();
+            errors.set(0);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Node> mNodes = new ConcurrentHashMap<>();
+
+    private SysfsStats() { }
+
+    public static SysfsStats getInstance() {
+        return sInstance;
+    }
+
+    public Node forNode(String path) {
+        final Node node = mNodes.get(path);
+        return node != null ? node : mNodes.computeIfAbsent(path, p -> new Node());
+    }
+
+    /**
+     * Clears every node's stats in place, open pool nodes keep recording into them.
+     */
+    public void reset() {
+        for (Node node : mNodes.values()) {
+            node.reset();
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("Sysfs latency (us):");
+        final Map<String, Node> nodes = new TreeMap<>(mNodes);
+        for (Map.Entry<String, Node> entry : nodes.entrySet()) {
+            final Node node = entry.getValue();
+            pw.println("  " + entry.getKey() + " errors=" + node.errors.get());
+            dump(pw, "open", node.opens);
+            dump(pw, "read", node.reads);
+            dump(pw, "write", node.writes);
+        }
+    }
+
+    private static void dump(PrintWriter pw, String name, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) return;
+        pw.println(String.format("    %-5s count=%d p50=%.1f p99=%.1f max=%.1f", name,
+                histogram.getCount(),
+                histogram.getPercentile(50) / 1000f,
+                histogram.getPercentile(99) / 1000f,
+                histogram.getMax() / 1000f));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last known value of sysfs nodes, served for a per-node time to live.
+ * Only nodes that were given a TTL with {@link #setTtl(String, long)} are cached.
+ */
+public final class SysfsValueCache {
+
+    private static final class Entry {
+        final String value;
+        final long expiresAt;
+
+        Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Long> mTtls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Sets how long a value of the node is trusted.
+     * @param ttlMs     time to live in milliseconds, 0 disables caching
+     */
+    public void setTtl(String path, long ttlMs) {
+        if (ttlMs <= 0) {
+            mTtls.remove(path);
+            mEntries.remove(path);
+        } else {
+            mTtls.put(path, ttlMs * 1000000L);
+        }
+    }
+
+    public boolean isCached(String path) {
+        return mTtls.containsKey(path);
+    }
+
+    /**
+     * @return the cached value, or null if there is none or it expired
+     */
+    public String get(String path) {
+        final Entry entry = mEntries.get(path);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.expiresAt >= 0) {
+            mEntries.remove(path, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public void put(String path, String value) {
+        final Long ttl = mTtls.get(path);
+        if (ttl == null || value == null) return;
+        mEntries.put(path, new Entry(value, System.nanoTime() + ttl));
+    }
+
+    public void invalidate(String path) {
+        mEntries.remove(path);
+    }
+
+    public void invalidateAll() {
+        mEntries.clear();
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2026 Yet Another AOSP Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pixelage.device.DeviceSettings;
+
+import static android.system.OsConstants.EINTR;
+import static android.system.OsConstants.O_RDONLY;
+import static android.system.OsConstants.POLLERR;
+import static android.system.OsConstants.POLLIN;
+import static android.system.OsConstants.POLLPRI;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructPollfd;
+import android.util.Log;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches sysfs nodes and tells subscribers whenever their value changes,
+ * no matter who changed it.
+ *
+ * Every node is polled for POLLPRI so drivers calling sysfs_notify() wake us
+ * up immediately. Nodes are also re-read on an interval that backs off while
+ * the value stays the same and resets when it changes, which covers drivers
+ * that never notify. Once a node has notified, it is only re-read every
+ * {@link #NOTIFY_INTERVAL_MS}.
+ *
+ * Reads of a watched node through {@link Utils} are served from the value
+ * cache, since any change invalidates it. Unwatched nodes aren't cached, as
+ * nothing would notice the driver or another writer changing them.
+ *
+ * The watcher thread only runs while there are subscribers.
+ */
+public final class SysfsWatcher {
+
+    private static final String TAG = "SysfsWatcher";
+
+    private static final long MIN_INTERVAL_MS = 250;
+    private static final long MAX_INTERVAL_MS = 4000;
+    private static final long NOTIFY_INTERVAL_MS = 30000;
+    private static final int BUFFER_SIZE = 64;
+
+    private static final SysfsWatcher sInstance = new SysfsWatcher();
+
+    public interface Listener {
+        void onNodeChanged(Event event);
+    }
+
+    public static final class Event {
+        private final String mFilename;
+        private final String mValue;
+
+        Event(String filename, String value) {
+            mFilename = filename;
+            mValue = value;
+        }
+
+        public String getFilename() {
+            return mFilename;
+        }
+
+        public String getValue() {
+            return mValue;
+        }
+
+        public boolean asBoolean() {
+            return !mValue.equals("0");
+        }
+
+        public int asInt(int defValue) {
+            try {
+                return Integer.parseInt(mValue);
+            } catch (NumberFormatException e) {
+                return defValue;
+            }
+        }
+    }
+
+    private static final class Subscriber {
+        final Listener listener;
+        final Handler handler;
+        volatile boolean active = true;
+
+        Subscriber(Listener listener, Handler handler) {
+            this.listener = listener;
+            this.handler = handler;
+        }
+    }
+
+    private static final class Node {
+        final String filename;
+        final List<Subscriber> subscribers = new ArrayList<>();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final byte[] last = new byte[BUFFER_SIZE];
+        int lastLen = -1;
+        Event event;
+        FileDescriptor fd;
+        boolean notifies;
+        long interval = MIN_INTERVAL_MS;
+        long deadline;
+
+        Node(String filename) {
+            this.filename = filename;
+        }
+    }
+
+    private final Object mLock = new Object();
+    private final Map<String, Node> mNodes = new HashMap<>();
+    private final List<Node> mRemoved = new ArrayList<>();
+    private FileDescriptor[] mWakePipe;
+    private Thread mThread;
+
+    private SysfsWatcher() { }
+
+    public static SysfsWatcher getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Subscribe to changes of the specified file. The listener is called on the
+     * main thread with the current value first, then with every change.
+     * @param filename      The filename
+     * @param listener      The listener
+     */
+    public void subscribe(String filename, Listener listener) {
+        subscribe(filename, listener, new Handler(Looper.getMainLooper()));
+    }
+
+    public void subscribe(String filename, Listener listener, Handler handler) {
+        if (filename == null) {
+            return;
+        }
+        synchronized (mLock) {
+            Node node = mNodes.get(filename);
+            if (node == null) {
+                node = new Node(filename);
+                mNodes.put(filename, node);
+                Utils.setCacheTtl(filename, NOTIFY_INTERVAL_MS);
+            }
+            final Subscriber subscriber = new Subscriber(listener, handler);
+            node.subscribers.add(subscriber);
+            if (node.event != null) {
+                dispatch(subscriber, node.event);
+            }
+            wakeLocked();
+        }
+    }
+
+    public void unsubscribe(String filename, Listener listener) {
+        if (filename == null) {
+            return;
+        }
+        synchronized (mLock) {
+            final Node node = mNodes.get(filename);
+            if (node == null) return;
+            for (int i = node.subscribers.size() - 1; i >= 0; i--) {
+                final Subscriber subscriber = node.subscribers.get(i);
+                if (subscriber.listener == listener) {
+                    subscriber.active = false;
+                    node.subscribers.remove(i);
+                }
+            }
+            if (node.subscribers.isEmpty()) {
+                mNodes.remove(filename);
+                Utils.setCacheTtl(filename, 0);
+                mRemoved.add(node);
+                wakeLocked();
+            }
+        }
+    }
+
+    private void wakeLocked() {
+        if (mThread == null) {
+            try {
+                mWakePipe = Os.pipe();
+            } catch (ErrnoException e) {
+                Log.e(TAG, "Failed to create wake pipe", e);
+                return;
+            }
+            mThread = new Thread(this::run, TAG);
+            mThread.start();
+            return;
+        }
+        try {
+            Os.write(mWakePipe[1], new byte[1], 0, 1);
+        } catch (ErrnoException | IOException e) {
+            Log.e(TAG, "Failed to wake watcher", e);
+        }
+    }
+
+    private void run() {
+        final byte[] drain = new byte[16];
+        while (true) {
+            final Node[] nodes;
+            final FileDescriptor wakeFd;
+            synchronized (mLock) {
+                for (Node node : mRemoved) {
+                    closeQuietly(node.fd);
+                    node.fd = null;
+                }
+                mRemoved.clear();
+                if (mNodes.isEmpty()) {
+                    closeQuietly(mWakePipe[0]);
+                    closeQuietly(mWakePipe[1]);
+                    mWakePipe = null;
+                    mThread = null;
+                    return;
+                }
+                nodes = mNodes.values().toArray(new Node[0]);
+                wakeFd = mWakePipe[0];
+            }
+
+            final SysfsBackend backend = SysfsNodePool.getInstance().getBackend();
+            long now = SystemClock.uptimeMillis();
+            final List<Node> open = new ArrayList<>(nodes.length);
+            for (Node node : nodes) {
+                if (node.fd == null) {
+                    try {
+                        node.fd = Os.open(backend.resolve(node.filename), O_RDONLY, 0);
+                    } catch (ErrnoException e) {
+                        // stays silent until it is subscribed to again
+                        Log.e(TAG, "Failed to open " + node.filename, e);
+                        continue;
+                    }
+                    check(node, now);
+                }
+                open.add(node);
+            }
+
+            final int count = open.size();
+            final StructPollfd[] fds = new StructPollfd[count + 1];
+            long timeout = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                fds[i] = new StructPollfd();
+                fds[i].fd = open.get(i).fd;
+                fds[i].events = (short) POLLPRI;
+                timeout = Math.min(timeout, open.get(i).deadline - now);
+            }
+            fds[count] = new StructPollfd();
+            fds[count].fd = wakeFd;
+            fds[count].events = (short) POLLIN;
+
+            try {
+                Os.poll(fds, timeout == Long.MAX_VALUE ? -1 : (int) Math.max(timeout, 0));
+            } catch (ErrnoException e) {
+                if (e.errno != EINTR) {
+                    Log.e(TAG, "poll failed", e);
+                    SystemClock.sleep(MIN_INTERVAL_MS);
+                }
+                continue;
+            }
+
+            if (fds[count].revents != 0) {
+                try {
+                    Os.read(wakeFd, drain, 0, drain.length);
+                } catch (ErrnoException | IOException e) {
+                    // ignore
+                }
+            }
+
+            now = SystemClock.uptimeMillis();
+            for (int i = 0; i < count; i++) {
+                final Node node = open.get(i);
+                if ((fds[i].revents & (POLLPRI | POLLERR)) != 0) {
+                    node.notifies = true;
+                    check(node, now);
+                } else if (now >= node.deadline) {
+                    check(node, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-reads the node, dispatches the value if it changed and schedules the
+     * next read.
+     */
+    private void check(Node node, long now) {
+        int len;
+        try {
+            len = Os.pread(node.fd, node.buffer, 0, node.buffer.length, 0);
+        } catch (ErrnoException | IOException e) {
+            Log.e(TAG, "Failed to read " + node.filename, e);
+            node.deadline = now + MAX_INTERVAL_MS;
+            return;
+        }
+        while (len > 0 && (node.buffer[len - 1] == '\n' || node.buffer[len - 1] == ' ')) {
+            len--;
+        }
+
+        if (!sameBytes(node, len)) {
+            System.arraycopy(node.buffer, 0, node.last, 0, len);
+            node.lastLen = len;
+            node.interval = MIN_INTERVAL_MS;
+            final Event event = new Event(node.filename,
+                    new String(node.buffer, 0, len, StandardCharsets.UTF_8));
+            Utils.invalidateCache(node.filename);
+            synchronized (mLock) {
+                node.event = event;
+                for (Subscriber subscriber : node.subscribers) {
+                    dispatch(subscriber, event);
+                }
+            }
+        } else {
+            node.interval = Math.min(node.interval * 2, MAX_INTERVAL_MS);
+        }
+        node.deadline = now + (node.notifies ? NOTIFY_INTERVAL_MS : node.interval);
+    }
+
+    private static boolean sameBytes(Node node, int len) {
+        if (len != node.lastLen) return false;
+        for (int i = 0; i < len; i++) {
+            if (node.buffer[i] != node.last[i]) return false;
+        }
+        return true;
+    }
+
+    private static void dispatch(Subscriber subscriber, Event event) {
+        subscriber.handler.post(() -> {
+            if (subscriber.active) {
+                subscriber.listener.onNodeChanged(event);
+            }
+        });
+    }
+
+    private static void closeQuietly(FileDescriptor fd) {
+        if (fd == null) return;
+        try {
+            Os.close(fd);
+        } catch (ErrnoException e) {
+            // ignore
+        }
+    }
+}
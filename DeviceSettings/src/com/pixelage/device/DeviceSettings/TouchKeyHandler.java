@@ -28,21 +28,40 @@ import android.Manifest;
 import android.media.AudioManager;
 import android.media.session.MediaSessionLegacyHelper;
 import android.net.Uri;
+import android.os.Environment;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.os.Message;
 import android.os.PowerManager;
+import android.os.PowerManagerInternal;
 import android.os.PowerManager.WakeLock;
+import android.os.Process;
 import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.os.Trace;
 import android.os.UserHandle;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.provider.Settings;
+import android.util.AtomicFile;
 import android.util.Log;
 import android.util.SparseIntArray;
 import android.view.KeyEvent;
 
+import com.android.internal.os.BackgroundThread;
 import com.android.internal.os.DeviceKeyHandler;
+import com.android.server.LocalServices;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.List;
 
 public class TouchKeyHandler implements DeviceKeyHandler {
@@ -55,16 +74,38 @@ public class TouchKeyHandler implements DeviceKeyHandler {
     private static final int GESTURE_WAKELOCK_DURATION = 3000;
     private static final int EVENT_PROCESS_WAKELOCK_DURATION = 500;
 
+    private static final String MAPPING_FILE_NAME = "device_settings_gestures.bin";
+    private static final int MAPPING_FILE_VERSION = 1;
+
+    // boost the CPU on the gesture's key down, before its key up is handled
+    private static final String PROP_PREWARM = "persist.sys.device_settings.gesture_prewarm";
+    // android.hardware.power.Boost.INTERACTION, a negative duration cancels it
+    private static final int BOOST_INTERACTION = 0;
+    private static final int PREWARM_BOOST_MS = 500;
+
     private final Context mContext;
     private final AudioManager mAudioManager;
     private final PowerManager mPowerManager;
+    private final PowerManagerInternal mPowerManagerInternal;
     private final WakeLock mGestureWakeLock;
+    private final AtomicFile mMappingFile;
+    private final HandlerThread mEventThread;
     private final EventHandler mEventHandler;
     private final Vibrator mVibrator;
 
-    private final SparseIntArray mActionMapping = new SparseIntArray();
+    // from the gesture event to dispatching it, and to the wake up call returning
+    private final LatencyHistogram mDispatchLatency = new LatencyHistogram();
+    private final LatencyHistogram mWakeLatency = new LatencyHistogram();
+    private final LatencyHistogram mPrewarmWakeLatency = new LatencyHistogram();
+    private final GestureRateLimiter mRateLimiter = new GestureRateLimiter();
+    private final PocketDetector mPocketDetector;
+    private long mPocketDropped;
+
+    // replaced as a whole, never modified once published
+    private volatile SparseIntArray mActionMapping;
 
     private boolean mInPocket;
+    private volatile boolean mPrewarmed;
 
     private final BroadcastReceiver mUpdateReceiver = new BroadcastReceiver() {
         @Override
@@ -73,12 +114,16 @@ public class TouchKeyHandler implements DeviceKeyHandler {
                     Constants.UPDATE_EXTRA_KEYCODE_MAPPING);
             int[] actions = intent.getIntArrayExtra(
                     Constants.UPDATE_EXTRA_ACTION_MAPPING);
-            mActionMapping.clear();
+            final SparseIntArray mapping = new SparseIntArray();
             if (keycodes != null && actions != null && keycodes.length == actions.length) {
                 for (int i = 0; i < keycodes.length; i++) {
-                    mActionMapping.put(keycodes[i], actions[i]);
+                    mapping.put(keycodes[i], actions[i]);
                 }
             }
+            if (isSameMapping(mapping, mActionMapping)) return;
+            mActionMapping = mapping;
+            // keep disk I/O off the gesture thread
+            BackgroundThread.getHandler().post(() -> saveMapping(mapping));
         }
     };
 
@@ -91,56 +136,231 @@ public class TouchKeyHandler implements DeviceKeyHandler {
         mGestureWakeLock = mPowerManager.newWakeLock(
                 PowerManager.PARTIAL_WAKE_LOCK,
                 "DeviceKeyHandler:TouchscreenGestureWakeLock");
+        mPowerManagerInternal = LocalServices.getService(PowerManagerInternal.class);
 
-        mEventHandler = new EventHandler();
+        // gestures must not queue behind whatever else runs on the constructing looper
+        mEventThread = new HandlerThread("TouchKeyHandler", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        mEventThread.start();
+        mEventHandler = new EventHandler(mEventThread.getLooper());
 
         mVibrator = context.getSystemService(Vibrator.class);
+        mPocketDetector = PocketDetector.getInstance(context);
+
+        // the settings only send the mapping when it changes, so start from the last one
+        mMappingFile = new AtomicFile(new File(Environment.getDataSystemDirectory(),
+                MAPPING_FILE_NAME));
+        mActionMapping = loadMapping();
 
         mContext.registerReceiver(mUpdateReceiver,
-                new IntentFilter(Constants.UPDATE_PREFS_ACTION));
+                new IntentFilter(Constants.UPDATE_PREFS_ACTION), null, mEventHandler);
+        mContext.registerReceiver(mDumpReceiver, new IntentFilter(Constants.DUMP_STATS_ACTION),
+                Manifest.permission.DUMP, mEventHandler, Context.RECEIVER_EXPORTED);
+    }
+
+    private final BroadcastReceiver mDumpReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final StringWriter sw = new StringWriter();
+            final PrintWriter pw = new PrintWriter(sw);
+            pw.println("Gesture latency since key event (ms):");
+            dump(pw, "dispatch", mDispatchLatency);
+            dump(pw, "wake", mWakeLatency);
+            dump(pw, "wake pw", mPrewarmWakeLatency);
+            mRateLimiter.dump(pw);
+            pw.println("  dropped in pocket=" + mPocketDropped);
+            pw.flush();
+            if (intent.getBooleanExtra(Constants.DUMP_STATS_EXTRA_RESET, false)) {
+                mDispatchLatency.reset();
+                mWakeLatency.reset();
+                mPrewarmWakeLatency.reset();
+                mRateLimiter.reset();
+                mPocketDropped = 0;
+            }
+            final String data = getResultData();
+            setResultData(data != null ? data + sw : sw.toString());
+        }
+    };
+
+    private static void dump(PrintWriter pw, String name, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) return;
+        pw.println(String.format("  %-8s count=%d p50=%.2f p99=%.2f max=%.2f", name,
+                histogram.getCount(),
+                histogram.getPercentile(50) / 1000000f,
+                histogram.getPercentile(99) / 1000000f,
+                histogram.getMax() / 1000000f));
     }
 
     @Override
     public KeyEvent handleKeyEvent(final KeyEvent event) {
         final int action = mActionMapping.get(event.getScanCode(), -1);
-        if (action < 0 || event.getAction() != KeyEvent.ACTION_UP
+        if (action < 0) {
+            return event;
+        }
+        if (event.getAction() == KeyEvent.ACTION_DOWN) {
+            maybePrewarm(action);
+            return event;
+        }
+        if (event.getAction() != KeyEvent.ACTION_UP
                 || !hasSetupCompleted() || mInPocket) {
+            cancelPrewarm();
             return event;
         }
 
+        final boolean prewarmed = mPrewarmed;
+        mPrewarmed = false;
         if (action != 0 && !mEventHandler.hasMessages(GESTURE_REQUEST)) {
-            final Message msg = getMessageForAction(action);
-            mGestureWakeLock.acquire(EVENT_PROCESS_WAKELOCK_DURATION);
-            mEventHandler.sendMessage(msg);
+            // noisy firmware can report gestures in a loop, e.g. in a pocket
+            if (!mRateLimiter.tryAcquire(event.getScanCode())) {
+                if (prewarmed) setBoost(-1);
+                return null;
+            }
+            // past the wakelock budget the gesture is still handled, just without it
+            acquireWakeLock(EVENT_PROCESS_WAKELOCK_DURATION);
+            final Message msg = getMessageForAction(action, event.getEventTimeNanos());
+            msg.arg2 = prewarmed ? 1 : 0;
+            if (!mPocketDetector.isInPocket()) {
+                mEventHandler.sendMessage(msg);
+                return null;
+            }
+            // the proximity samples are batched, check the latest ones before dropping it
+            mPocketDetector.flush(() -> {
+                if (mPocketDetector.isInPocket()) {
+                    if (prewarmed) setBoost(-1);
+                    mEventHandler.post(() -> mPocketDropped++);
+                    msg.recycle();
+                } else {
+                    mEventHandler.sendMessage(msg);
+                }
+            });
+        } else if (prewarmed) {
+            setBoost(-1);
         }
 
         return null;
     }
 
+    /**
+     * Boost as soon as a gesture that wakes the screen starts, so the CPU is up
+     * by the time its key up gets dispatched. Cancelled if it gets dropped.
+     */
+    private void maybePrewarm(int action) {
+        if (action != Constants.ACTION_WAKE_DEVICE && action != Constants.ACTION_AMBIENT_DISPLAY) {
+            return;
+        }
+        if (mPowerManagerInternal == null || !SystemProperties.getBoolean(PROP_PREWARM, true)
+                || mInPocket || mPocketDetector.isInPocket() || !hasSetupCompleted()) {
+            return;
+        }
+        Trace.beginSection("TouchKeyHandler.prewarm");
+        setBoost(PREWARM_BOOST_MS);
+        Trace.endSection();
+        mPrewarmed = true;
+    }
+
+    private void cancelPrewarm() {
+        if (mPrewarmed) {
+            mPrewarmed = false;
+            setBoost(-1);
+        }
+    }
+
+    private void setBoost(int durationMs) {
+        if (mPowerManagerInternal != null) {
+            mPowerManagerInternal.setPowerBoost(BOOST_INTERACTION, durationMs);
+        }
+    }
+
     public void onPocketStateChanged(boolean inPocket) {
         mInPocket = inPocket;
     }
 
+    private void acquireWakeLock(long durationMs) {
+        final long grantedMs = mRateLimiter.acquireWakeLock(durationMs);
+        if (grantedMs > 0) {
+            mGestureWakeLock.acquire(grantedMs);
+        }
+    }
+
     private boolean hasSetupCompleted() {
         return Settings.Secure.getInt(mContext.getContentResolver(),
                 Settings.Secure.USER_SETUP_COMPLETE, 0) != 0;
     }
 
-    private Message getMessageForAction(final int action) {
+    private static boolean isSameMapping(SparseIntArray a, SparseIntArray b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.keyAt(i) != b.keyAt(i) || a.valueAt(i) != b.valueAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read the mapping saved by {@link #saveMapping(SparseIntArray)}: a version,
+     * the number of entries, then every keycode followed by its action.
+     */
+    private SparseIntArray loadMapping() {
+        final SparseIntArray mapping = new SparseIntArray();
+        if (!mMappingFile.exists()) return mapping;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(mMappingFile.openRead()))) {
+            if (in.readInt() != MAPPING_FILE_VERSION) return mapping;
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final int keycode = in.readInt();
+                mapping.put(keycode, in.readInt());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read gesture mapping", e);
+            mapping.clear();
+        }
+        return mapping;
+    }
+
+    private void saveMapping(SparseIntArray mapping) {
+        FileOutputStream fos = null;
+        try {
+            fos = mMappingFile.startWrite();
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAPPING_FILE_VERSION);
+            out.writeInt(mapping.size());
+            for (int i = 0; i < mapping.size(); i++) {
+                out.writeInt(mapping.keyAt(i));
+                out.writeInt(mapping.valueAt(i));
+            }
+            out.flush();
+            mMappingFile.finishWrite(fos);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save gesture mapping", e);
+            mMappingFile.failWrite(fos);
+        }
+    }
+
+    private Message getMessageForAction(final int action, final long eventTimeNanos) {
         Message msg = mEventHandler.obtainMessage(GESTURE_REQUEST);
         msg.arg1 = action;
+        msg.obj = eventTimeNanos;
         return msg;
     }
 
     private class EventHandler extends Handler {
+        EventHandler(Looper looper) {
+            super(looper);
+        }
+
         @Override
         public void handleMessage(final Message msg) {
+            final long eventTimeNanos = (Long) msg.obj;
+            mDispatchLatency.record(SystemClock.uptimeNanos() - eventTimeNanos);
             switch (msg.arg1) {
                 case Constants.ACTION_AMBIENT_DISPLAY:
                     launchDozePulse();
                     break;
                 case Constants.ACTION_WAKE_DEVICE:
+                    Trace.beginSection("TouchKeyHandler.wakeDevice");
                     wakeDevice();
+                    Trace.endSection();
+                    (msg.arg2 != 0 ? mPrewarmWakeLatency : mWakeLatency)
+                            .record(SystemClock.uptimeNanos() - eventTimeNanos);
                     break;
             }
         }
@@ -150,7 +370,7 @@ public class TouchKeyHandler implements DeviceKeyHandler {
         final boolean dozeEnabled = Settings.Secure.getInt(mContext.getContentResolver(),
                 Settings.Secure.DOZE_ENABLED, 1) != 0;
         if (dozeEnabled) {
-            mGestureWakeLock.acquire(GESTURE_WAKELOCK_DURATION);
+            acquireWakeLock(GESTURE_WAKELOCK_DURATION);
             final Intent intent = new Intent(PULSE_ACTION);
             mContext.sendBroadcastAsUser(intent, UserHandle.CURRENT);
             doHapticFeedback();
@@ -158,7 +378,7 @@ public class TouchKeyHandler implements DeviceKeyHandler {
     }
 
     private void wakeDevice() {
-        mGestureWakeLock.acquire(GESTURE_WAKELOCK_DURATION);
+        acquireWakeLock(GESTURE_WAKELOCK_DURATION);
         mPowerManager.wakeUp(SystemClock.uptimeMillis(), GESTURE_WAKEUP_REASON);
     }
 
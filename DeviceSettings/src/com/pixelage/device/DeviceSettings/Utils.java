@@ -24,12 +24,7 @@ import android.content.pm.PackageManager.PackageInfoFlags;
 import android.content.res.Resources;
 import android.util.Log;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.util.concurrent.CompletableFuture;
 
 public class Utils {
 
@@ -41,19 +36,45 @@ public class Utils {
      * @param value         The value
      */
     public static void writeValue(String filename, String value) {
-        if (filename == null) {
-            return;
-        }
-        try {
-            FileOutputStream fos = new FileOutputStream(filename);
-            fos.write(value.getBytes());
-            fos.flush();
-            fos.close();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        SysfsIo.writeValue(filename, value, false);
+    }
+
+    /**
+     * See {@link SysfsIo#writeValue(String, String, boolean)}.
+     */
+    public static boolean writeValue(String filename, String value, boolean skipUnchanged) {
+        return SysfsIo.writeValue(filename, value, skipUnchanged);
+    }
+
+    /**
+     * See {@link SysfsIo#writeValueAsync(String, String, boolean)}.
+     */
+    public static CompletableFuture<Boolean> writeValueAsync(String filename, String value,
+            boolean skipUnchanged) {
+        return SysfsIo.writeValueAsync(filename, value, skipUnchanged);
+    }
+
+    /**
+     * See {@link SysfsIo#setCacheTtl(String, long)}.
+     */
+    public static void setCacheTtl(String filename, long ttlMs) {
+        SysfsIo.setCacheTtl(filename, ttlMs);
+    }
+
+    public static void invalidateCache(String filename) {
+        SysfsIo.invalidateCache(filename);
+    }
+
+    public static void invalidateCache() {
+        SysfsIo.invalidateCache();
+    }
+
+    public static long getWritesCommitted() {
+        return SysfsIo.getWritesCommitted();
+    }
+
+    public static long getWritesSkipped() {
+        return SysfsIo.getWritesSkipped();
     }
 
     /**
@@ -62,45 +83,27 @@ public class Utils {
      * @return              Whether the file exists or not
      */
     public static boolean fileExists(String filename) {
-        if (filename == null) {
-            return false;
-        }
-        return new File(filename).exists();
+        return SysfsIo.fileExists(filename);
     }
 
     public static boolean fileWritable(String filename) {
-        return fileExists(filename) && new File(filename).canWrite();
+        return SysfsIo.fileWritable(filename);
     }
 
     public static String readLine(String filename) {
-        if (filename == null) {
-            return null;
-        }
-        BufferedReader br = null;
-        String line;
-        try {
-            br = new BufferedReader(new FileReader(filename), 1024);
-            line = br.readLine();
-        } catch (IOException e) {
-            return null;
-        } finally {
-            if (br != null) {
-                try {
-                    br.close();
-                } catch (IOException e) {
-                    // ignore
-                }
-            }
-        }
-        return line;
+        return SysfsIo.readLine(filename);
     }
 
     public static boolean getFileValueAsBoolean(String filename, boolean defValue) {
-        String fileValue = readLine(filename);
-        if(fileValue!=null){
-            return (!fileValue.equals("0"));
-        }
-        return defValue;
+        return SysfsIo.readBoolean(filename, defValue);
+    }
+
+    public static int readInt(String filename, int defValue) {
+        return SysfsIo.readInt(filename, defValue);
+    }
+
+    public static long readFixedPoint(String filename, int fractionDigits, long defValue) {
+        return SysfsIo.readFixedPoint(filename, fractionDigits, defValue);
     }
 
     public static String getFileValue(String filename, String defValue) {